@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * HotPathBenchmarks measures the per call cost of the code that runs for every event and
+ * every agent movement of a simulation.
+ * 
+ * Every benchmark is run for each grid size, number of events per edge and way of storing
+ * events on an edge. A benchmark name
+ * may be given as an argument to only run benchmarks whose name contains it.
+ * 
+ * Run with: mvn -P benchmark compile exec:exec
+ * 
+ * @author mosca1337
+ *
+ */
+public class HotPathBenchmarks {
+	
+	public final static int[] gridSizes = {5, 20, 50};
+	public final static int[] eventsPerEdge = {1, 10, 100};
+	public final static boolean[] arrayStorage = {false, true};
+	
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+		
+		for (int gridSize : gridSizes) {
+			for (int events : eventsPerEdge) {
+				for (boolean arrays : arrayStorage) {
+					System.out.println("Grid " + gridSize + "x" + gridSize + ", " + events + " events per edge, " + (arrays ? "array" : "object") + " storage");
+					for (MicroBenchmark benchmark : createBenchmarks(gridSize, events, arrays)) {
+						if (benchmark.name.contains(filter)) {
+							System.out.println(benchmark.measure());
+						}
+					}
+					System.out.println();
+				}
+			}
+		}
+		System.out.println("(" + MicroBenchmark.sink + ")");
+	}
+	
+	/**
+	 * Builds a simulation on a grid with the given number of events on every edge.
+	 */
+	public static Simulation createSimulation(int gridSize, int events, boolean arrayStorage) {
+		Simulation simulation = new Simulation();
+		simulation.setSeed(1337);
+		simulation.timeConstant = 100;
+		simulation.eventValueFunction = SimulationManager.decreasingValue;
+		simulation.graph = new EventGraph(gridSize, gridSize);
+		simulation.graph.setArrayStorage(arrayStorage);
+		
+		for (EventEdge edge : simulation.graph.edges) {
+			for (int i = 0; i < events; i++) {
+				edge.addEvent(createEvent(simulation, 0));
+			}
+		}
+		return simulation;
+	}
+	
+	public static Event createEvent(Simulation simulation, double time) {
+		int priority = Simulation.minPriority + simulation.random.priorities.nextInt(Simulation.maxPriority - Simulation.minPriority + 1);
+		return new Event(priority, time, simulation.eventValueFunction, simulation.timeConstant);
+	}
+	
+	public static List<MicroBenchmark> createBenchmarks(final int gridSize, final int events, final boolean arrayStorage) {
+		List<MicroBenchmark> benchmarks = new ArrayList<MicroBenchmark>();
+		
+		benchmarks.add(new MicroBenchmark("EventGraph.getAdjacentEdges") {
+			private EventGraph graph;
+			private Vertex[] vertices;
+			private int next;
+			
+			public void setup() {
+				graph = createSimulation(gridSize, events, arrayStorage).graph;
+				vertices = graph.vertices.toArray(new Vertex[0]);
+			}
+			
+			public long operation() {
+				next = (next + 1) % vertices.length;
+				return graph.getAdjacentEdges(vertices[next]).size();
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("EventGraph.isAdjacent") {
+			private EventGraph graph;
+			private Vertex[] from;
+			private Vertex[] to;
+			private int next;
+			
+			public void setup() {
+				graph = createSimulation(gridSize, events, arrayStorage).graph;
+				
+				// Half of the pairs are adjacent
+				Random random = new Random(1337);
+				Vertex[] vertices = graph.vertices.toArray(new Vertex[0]);
+				EventEdge[] edges = graph.edges.toArray(new EventEdge[0]);
+				from = new Vertex[1024];
+				to = new Vertex[1024];
+				for (int i = 0; i < from.length; i++) {
+					if (i % 2 == 0) {
+						EventEdge edge = edges[random.nextInt(edges.length)];
+						from[i] = edge.vertex1;
+						to[i] = edge.vertex2;
+					} else {
+						from[i] = vertices[random.nextInt(vertices.length)];
+						to[i] = vertices[random.nextInt(vertices.length)];
+					}
+				}
+			}
+			
+			public long operation() {
+				next = (next + 1) & 1023;
+				return graph.isAdjacent(from[next], to[next]) ? 1 : 0;
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("EventEdge.getPriority") {
+			private EventEdge edge;
+			
+			public void setup() {
+				edge = createSimulation(gridSize, events, arrayStorage).graph.edges.iterator().next();
+			}
+			
+			public long operation() {
+				return edge.getPriority(1);
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("EventEdge.collectEvents (fill+collect)") {
+			private Simulation simulation;
+			private EventEdge edge;
+			private Event[] fill;
+			private double time;
+			
+			public void setup() {
+				simulation = createSimulation(gridSize, events, arrayStorage);
+				edge = simulation.graph.edges.iterator().next();
+				fill = new Event[events];
+				for (int i = 0; i < events; i++) {
+					fill[i] = createEvent(simulation, 0);
+				}
+			}
+			
+			public long operation() {
+				for (Event event : fill) {
+					edge.addEvent(event);
+				}
+				time += 1;
+				return edge.collectEvents(time).size();
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("EventEdge.removeDeadEvents") {
+			private EventEdge edge;
+			
+			public void setup() {
+				edge = createSimulation(gridSize, events, arrayStorage).graph.edges.iterator().next();
+			}
+			
+			public long operation() {
+				// No event is dead yet, so every call scans all events
+				return edge.removeDeadEvents(1).size();
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Agent.move") {
+			private Simulation simulation;
+			private EventGraph graph;
+			private Agent agent;
+			private double time;
+			
+			public void setup() {
+				simulation = createSimulation(gridSize, events, arrayStorage);
+				simulation.eventValueFunction = SimulationManager.constantValue;
+				graph = simulation.graph;
+				agent = new Agent("A", simulation, simulation.graph.vertexArray[0][0], null);
+				agent.setServiceRate(new Fraction(1, 10));
+			}
+			
+			public long operation() {
+				// Keep a steady supply of events on the graph, the way the simulation adds them.
+				// With array storage a move should allocate nothing once warmed up.
+				EventEdge edge = graph.getEdge(simulation.random.edges.nextInt(graph.getEdgeCount()));
+				int priority = Simulation.minPriority + simulation.random.priorities.nextInt(Simulation.maxPriority - Simulation.minPriority + 1);
+				edge.addEvent(priority, time, Event.getLifeSpan(priority, simulation.eventValueFunction, simulation.timeConstant));
+				time = agent.move(time);
+				return (long) time;
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Arrival edge, uniform") {
+			private Random random;
+			private int edgeCount;
+			
+			public void setup() {
+				random = new Random(1337);
+				edgeCount = 2 * gridSize * (gridSize - 1);
+			}
+			
+			public long operation() {
+				return random.nextInt(edgeCount);
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Arrival edge, weighted") {
+			private Random random;
+			private AliasTable table;
+			
+			public void setup() {
+				// Hotspots: a few edges get most of the events
+				random = new Random(1337);
+				double[] weights = new double[2 * gridSize * (gridSize - 1)];
+				for (int i = 0; i < weights.length; i++) {
+					weights[i] = 1.0 / (1 + i % 97);
+				}
+				table = new AliasTable(weights);
+			}
+			
+			public long operation() {
+				return table.sample(random);
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Exponential, inversion") {
+			private Random random;
+			
+			public void setup() {
+				random = new Random(1337);
+			}
+			
+			public long operation() {
+				// As Exponential drew arrivals before Variates
+				random.nextDouble();
+				return (long) (1000 * -Math.log(1 - random.nextDouble()));
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Exponential, ziggurat") {
+			private Variates variates;
+			
+			public void setup() {
+				variates = new Variates(1337);
+			}
+			
+			public long operation() {
+				return (long) (1000 * variates.nextExponential());
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Priority, Random.nextInt") {
+			private Random random;
+			
+			public void setup() {
+				random = new Random(1337);
+			}
+			
+			public long operation() {
+				return Simulation.minPriority + random.nextInt(Simulation.maxPriority - Simulation.minPriority + 1);
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("Priority, Variates.nextInclusive") {
+			private Variates variates;
+			
+			public void setup() {
+				variates = new Variates(1337);
+			}
+			
+			public long operation() {
+				return variates.nextInclusive(Simulation.minPriority, Simulation.maxPriority);
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("PriorityQueue<EventTask> add+remove") {
+			private PriorityQueue<EventTask> queue;
+			private Random random;
+			
+			public void setup() {
+				// Queue sized like the simulation's event queue
+				int size = events * 2 * gridSize * (gridSize - 1);
+				random = new Random(1337);
+				queue = new PriorityQueue<EventTask>(size, new Comparator<EventTask>() {
+					public int compare(EventTask eventTask1, EventTask eventTask2) {
+						return Double.compare(eventTask1.executionTime, eventTask2.executionTime);
+					}
+				});
+				for (int i = 0; i < size; i++) {
+					queue.add(new NoOpTask(random.nextDouble() * size));
+				}
+			}
+			
+			public long operation() {
+				EventTask task = queue.remove();
+				queue.add(new NoOpTask(task.executionTime + random.nextDouble() * queue.size()));
+				return queue.size();
+			}
+		});
+		
+		benchmarks.add(new MicroBenchmark("EventScheduler schedule+poll") {
+			private EventScheduler scheduler;
+			private Random random;
+			
+			public void setup() {
+				// Same size and times as the PriorityQueue benchmark
+				int size = events * 2 * gridSize * (gridSize - 1);
+				random = new Random(1337);
+				scheduler = new EventScheduler(size);
+				for (int i = 0; i < size; i++) {
+					scheduler.schedule(scheduler.register(new NoOpTask(0)), random.nextDouble() * size);
+				}
+			}
+			
+			public long operation() {
+				int task = scheduler.poll();
+				scheduler.schedule(task, scheduler.getTime() + random.nextDouble() * scheduler.size());
+				return scheduler.size();
+			}
+		});
+		
+		return benchmarks;
+	}
+	
+	static class NoOpTask extends EventTask {
+		public NoOpTask(double executionTime) {
+			super(executionTime);
+		}
+
+		@Override
+		public void run() {
+		}
+	}
+}
@@ -0,0 +1,114 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * MicroBenchmark is a small timing harness for the simulation's hot paths.
+ * 
+ * An operation is run repeatedly for a warm up period so the JIT can compile it, and then
+ * timed over several measurement iterations. Allocation is measured with the thread's
+ * allocated byte counter, so both time and garbage per operation are reported.
+ * 
+ * @author mosca1337
+ *
+ */
+public abstract class MicroBenchmark {
+	
+	// Timing
+	public static long warmupMillis = 500;
+	public static long iterationMillis = 200;
+	public static int iterations = 10;
+	
+	// Results of operations are accumulated so that the JIT cannot remove them
+	public static long sink;
+	
+	public String name;
+	
+	public MicroBenchmark(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Prepares the state used by operation().
+	 */
+	public void setup() {
+	}
+	
+	/**
+	 * Performs a single operation of the benchmark.
+	 */
+	public abstract long operation();
+	
+	public Result measure() {
+		setup();
+		
+		// Warm up
+		runFor(warmupMillis);
+		
+		// Measure
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		double[] nanosPerOperation = new double[iterations];
+		long totalOperations = 0;
+		long allocatedBefore = allocatedBytes(threadBean, threadId);
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			long operations = runFor(iterationMillis);
+			nanosPerOperation[i] = (double) (System.nanoTime() - start) / operations;
+			totalOperations += operations;
+		}
+		long allocated = allocatedBytes(threadBean, threadId) - allocatedBefore;
+		
+		return new Result(name, nanosPerOperation, (double) allocated / totalOperations);
+	}
+	
+	private long runFor(long millis) {
+		long end = System.nanoTime() + millis * 1000000;
+		long operations = 0;
+		long value = 0;
+		do {
+			// Check the clock every 64 operations
+			for (int i = 0; i < 64; i++) {
+				value += operation();
+			}
+			operations += 64;
+		} while (System.nanoTime() < end);
+		sink += value;
+		return operations;
+	}
+	
+	private static long allocatedBytes(ThreadMXBean threadBean, long threadId) {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+		}
+		return 0;
+	}
+	
+	public static class Result {
+		public String name;
+		public double nanosPerOperation;
+		public double error;
+		public double bytesPerOperation;
+		
+		public Result(String name, double[] nanosPerOperation, double bytesPerOperation) {
+			this.name = name;
+			this.bytesPerOperation = bytesPerOperation;
+			
+			// Mean and standard deviation of all iterations
+			double sum = 0;
+			for (double nanos : nanosPerOperation) {
+				sum += nanos;
+			}
+			this.nanosPerOperation = sum / nanosPerOperation.length;
+			double squares = 0;
+			for (double nanos : nanosPerOperation) {
+				squares += (nanos - this.nanosPerOperation) * (nanos - this.nanosPerOperation);
+			}
+			this.error = Math.sqrt(squares / nanosPerOperation.length);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%-40s %12.1f ns/op %10.1f ns %12.1f B/op", name, nanosPerOperation, error, bytesPerOperation);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * VariateCheck compares the variates drawn by Variates with the way they were drawn
+ * before, inverting the distribution with java.util.Random, and reports whether the two
+ * could come from the same distribution.
+ *
+ * Exponentials are compared with a two sample Kolmogorov-Smirnov test, and each against
+ * the exponential distribution itself. Priorities are compared with a chi-square test
+ * against equal counts. The exit status is 1 if any test fails at the 0.1% level.
+ *
+ * Run with: mvn -P benchmark compile exec:exec -Dbenchmark.main=VariateCheck
+ *
+ * @author mosca1337
+ *
+ */
+public class VariateCheck {
+
+	public final static int samples = 1000000;
+	public final static long seed = 1337;
+
+	// Critical values at the 0.1% level
+	public final static double ksCoefficient = 1.949; // Times sqrt((n + m) / (n m))
+	public final static double chiSquare9 = 27.877; // 9 degrees of freedom
+
+	public static void main(String[] args) {
+		boolean passed = true;
+
+		// Exponentials, as Exponential drew them before and as it draws them now
+		Random random = new Random(seed);
+		double[] inverted = new double[samples];
+		for (int i = 0; i < samples; i++) {
+			inverted[i] = -Math.log(1 - random.nextDouble());
+		}
+		double[] ziggurat = new double[samples];
+		new Variates(seed).fillExponential(ziggurat, 1);
+		Arrays.sort(inverted);
+		Arrays.sort(ziggurat);
+
+		double critical = ksCoefficient * Math.sqrt(2.0 / samples);
+		passed &= report("Exponential, ziggurat vs inversion", twoSampleDistance(ziggurat, inverted), critical);
+		critical = ksCoefficient * Math.sqrt(1.0 / samples);
+		passed &= report("Exponential, inversion vs exact", exponentialDistance(inverted), critical);
+		passed &= report("Exponential, ziggurat vs exact", exponentialDistance(ziggurat), critical);
+
+		// The tail, where the ziggurat takes its slow path
+		double tail = 0;
+		for (int i = samples - 1; i >= 0 && ziggurat[i] > 7.69711747013104972; i--) {
+			tail++;
+		}
+		double expected = samples * Math.exp(-7.69711747013104972);
+		passed &= report("Exponential, ziggurat tail count", Math.abs(tail - expected) / Math.sqrt(expected), 3.29);
+
+		// Means
+		System.out.printf("%-40s %10.5f %10.5f%n", "Exponential means", mean(inverted), mean(ziggurat));
+
+		// Priorities from 1 to 10
+		int[] priorities = new int[samples];
+		new Variates(seed).fillInclusive(priorities, Simulation.minPriority, Simulation.maxPriority);
+		long[] counts = new long[Simulation.maxPriority - Simulation.minPriority + 1];
+		for (int priority : priorities) {
+			counts[priority - Simulation.minPriority]++;
+		}
+		double chi = 0;
+		double expectedCount = (double) samples / counts.length;
+		for (long count : counts) {
+			chi += (count - expectedCount) * (count - expectedCount) / expectedCount;
+		}
+		passed &= report("Priorities, chi-square", chi, chiSquare9);
+
+		System.out.println(passed ? "All tests passed" : "Some tests failed");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean report(String name, double statistic, double critical) {
+		boolean passed = statistic < critical;
+		System.out.printf("%-40s %10.5f %10.5f %s%n", name, statistic, critical, passed ? "pass" : "FAIL");
+		return passed;
+	}
+
+	/**
+	 * Largest difference between the distribution functions of two sorted samples.
+	 */
+	private static double twoSampleDistance(double[] sample1, double[] sample2) {
+		int i = 0;
+		int j = 0;
+		double distance = 0;
+		while (i < sample1.length && j < sample2.length) {
+			double x = Math.min(sample1[i], sample2[j]);
+			while (i < sample1.length && sample1[i] <= x) {
+				i++;
+			}
+			while (j < sample2.length && sample2[j] <= x) {
+				j++;
+			}
+			distance = Math.max(distance, Math.abs((double) i / sample1.length - (double) j / sample2.length));
+		}
+		return distance;
+	}
+
+	/**
+	 * Largest difference between the distribution function of a sorted sample and the
+	 * exponential distribution with a mean of 1.
+	 */
+	private static double exponentialDistance(double[] sample) {
+		double distance = 0;
+		for (int i = 0; i < sample.length; i++) {
+			double exact = 1 - Math.exp(-sample[i]);
+			distance = Math.max(distance, Math.max(exact - (double) i / sample.length, (double) (i + 1) / sample.length - exact));
+		}
+		return distance;
+	}
+
+	private static double mean(double[] sample) {
+		double total = 0;
+		for (double x : sample) {
+			total += x;
+		}
+		return total / sample.length;
+	}
+}
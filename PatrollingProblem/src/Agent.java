@@ -1,11 +1,14 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
 
 
-public class Agent {
+public class Agent implements EventCollector {
 	
 	public Simulation simulation;
 	
@@ -14,19 +17,23 @@ public class Agent {
 	public Vertex lastVertex;
 	public EventEdge lastEdge = null;
 	public EventEdge currentEdge = null;
-	public Set<EventEdge> boundary;
+	public BitSet boundary; // Ids of the edges the agent may travel, null allows the agent to move anywhere
 	private Fraction serviceRate;
 	private double serviceTime;
 	
 	// Movement logistics
-	private Stack<EventEdge> lastEdges;
+	private List<EventEdge> lastEdges; // Each edge once, in the order first traversed
+	private BitSet lastEdgeIds; // Ids of the edges in lastEdges
 	public Queue<EventEdge> movementSequence;
+	private int eventEdge = -1; // Id of the last edge found with events, which is likely to still have them
 	
 	// Agent statistics
 	public int totalPriorityCollected;
 	public long totalDelay;
 	public int deadEventsCollected;
 	public int liveEventsCollected;
+	public double busyTime; // Time spent serving events rather than idling
+	public boolean parked = false; // Waiting for an event to arrive in the boundary
 	
 	// Animation properties
 	public Vertex movingToVertex;
@@ -37,17 +44,18 @@ public class Agent {
 	// belong to a simulation
 	// have a starting location
 	// and can travel within a boundary
-	public Agent(String name, Simulation simulation, Vertex initialLocation, Set<EventEdge> boundary) {
+	public Agent(String name, Simulation simulation, Vertex initialLocation, BitSet boundary) {
 		this.name = name;
 		this.simulation = simulation;
 		this.lastVertex = initialLocation;
 		this.movingToVertex = initialLocation;
 		this.boundary = boundary; // null boundary allows the agent to move anywhere
-		this.lastEdges = new Stack<EventEdge>();
+		this.lastEdges = new ArrayList<EventEdge>();
+		this.lastEdgeIds = new BitSet();
 		
 		// Default service rate of 1
 		this.setServiceRate(new Fraction(1, 1));
-		this.movementSequence = new LinkedList<EventEdge>();
+		this.movementSequence = new ArrayDeque<EventEdge>();
 	}
 	
 	public Fraction getServiceRate() {
@@ -58,7 +66,7 @@ public class Agent {
 		serviceRate = aServiceRate;
 		
 		// Find service time
-		serviceTime = serviceRate.evaluate() * Simulation.timeConstant;
+		serviceTime = serviceRate.evaluate() * simulation.timeConstant;
 	}
     
 	public double getAverageDelay() {
@@ -66,7 +74,7 @@ public class Agent {
 		if (liveEventsCollected == 0) {
 			return 0;
 		}
-		return (double)totalDelay / (double)liveEventsCollected / Simulation.timeConstant;
+		return (double)totalDelay / (double)liveEventsCollected / simulation.timeConstant;
 	}
 	
 	public double move(double startTime) {
@@ -81,6 +89,7 @@ public class Agent {
 		// Update locations
 		lastEdge = currentEdge;
     	lastVertex = movingToVertex;
+    	parked = false;
 
     	// If we are out of planned movements, find the next path
     	if (movementSequence.size() == 0) {
@@ -90,6 +99,12 @@ public class Agent {
 //        	findMovesWithTwoStepLookAhead(lastVertex);
 //        	findMovements(lastVertex, 3);
     	}
+    	
+    	// Wait where we are until the simulation wakes us
+    	if (parked) {
+    		currentEdge = null;
+    		return endTime;
+    	}
 
     	// Get the next movement
     	currentEdge = movementSequence.poll();
@@ -103,42 +118,48 @@ public class Agent {
 
 		// Traversal time for the visualization
 		startTime = endTime;
-		double traversalTime = getTraversalTime(currentEdge, startTime);
+		int edgePriority = currentEdge.getPriority(startTime);
+		double traversalTime = getTraversalTime(currentEdge, edgePriority);
 		endTime = startTime + traversalTime;
+		if (edgePriority > 0) {
+			busyTime += traversalTime;
+		}
 
 		// Collect all events
-		Set<Event> collectedEvents = currentEdge.collectEvents(startTime);
-		for (Event event : collectedEvents) {
-			
-			// Collect the total priority and delay from each event on the edge
-			totalPriorityCollected += event.getPriority(startTime);
-			double delay = event.timeCollected - event.timeGenerated;
-			totalDelay += delay;
-			
-			// Count live and dead events
-			if (event.getPriority(startTime) <= 0) {
-				deadEventsCollected++;
-			} else {
-				liveEventsCollected++;
-			}
-		}
+		currentEdge.collectEvents(startTime, this);
 		
 		return endTime;
 	}
 	
+	public void eventCollected(int priority, double timeGenerated, double timeCollected) {
+		
+		// Collect the total priority and delay from each event on the edge
+		totalPriorityCollected += priority;
+		double delay = timeCollected - timeGenerated;
+		totalDelay += delay;
+		
+		// Count live and dead events
+		if (priority <= 0) {
+			deadEventsCollected++;
+		} else {
+			liveEventsCollected++;
+		}
+	}
+	
 	private void basicFindMove(Vertex currentLocation) {
 
     	EventEdge nextEdge = null;
-		Set<EventEdge> adjacentEdges = simulation.graph.getAdjacentEdges(currentLocation);
-
-		// Only travel within the agent's boundary
-    	if (boundary != null) {
-    		adjacentEdges.retainAll(boundary);
-    	}
+		EventEdge[] adjacentEdges = simulation.graph.getAdjacentEdgeArray(currentLocation);
 
 		// Looks for edge with highest priority
 		int highestPriority = -1;
 		for (EventEdge edge : adjacentEdges) {
+			
+			// Only travel within the agent's boundary
+			if (!isWithinBoundary(edge)) {
+				continue;
+			}
+			
 			int edgePriority = edge.getPriority(startTime);
 			if (edgePriority > highestPriority) {
 				highestPriority = edgePriority;
@@ -149,73 +170,228 @@ public class Agent {
 		// If all adjacent edges have no events, pick a new edge
 		if (highestPriority == 0) {
 			
-			// Avoid recently traversed edges
-			for (EventEdge edge : lastEdges) {
-				adjacentEdges.remove(edge);
-			}
-
-			// Pick a new edge
-			for (EventEdge edge : adjacentEdges) {
-				nextEdge = edge;
-				break;
+			// Rather than wander an empty boundary, wait for an event
+			if (simulation.idleParking && !hasEvents(startTime)) {
+				parked = true;
+				return;
 			}
+			
+			// Pick a new edge, avoiding recently traversed edges
+			nextEdge = findIdleEdge(adjacentEdges);
 		} else {
 			// If the chosen edge has value, reset lastEdges
-			lastEdges.removeAllElements();
+			clearLastEdges();
 		}
 		
+		// The boundary may have moved away from the agent, wander until it is found again
+		if (nextEdge == null) {
+			nextEdge = findLostEdge(adjacentEdges);
+		}
 
-    	lastEdges.add(nextEdge);
+		addLastEdge(nextEdge);
 		movementSequence.add(nextEdge);
 	}
 	
+	/**
+	 * The edge to wander along when no edge within the boundary here has events: the first
+	 * one not traversed recently, or else the first one. Null if no edge here is within the
+	 * boundary.
+	 */
+	private EventEdge findIdleEdge(EventEdge[] adjacentEdges) {
+		EventEdge idleEdge = null;
+		for (EventEdge edge : adjacentEdges) {
+			if (isWithinBoundary(edge)) {
+				if (!lastEdgeIds.get(edge.id)) {
+					return edge;
+				}
+				if (idleEdge == null) {
+					idleEdge = edge;
+				}
+			}
+		}
+		return idleEdge;
+	}
+	
+	/**
+	 * The edge to wander along when no edge here is within the boundary.
+	 */
+	private EventEdge findLostEdge(EventEdge[] adjacentEdges) {
+		for (EventEdge edge : adjacentEdges) {
+			if (!lastEdgeIds.get(edge.id)) {
+				return edge;
+			}
+		}
+		return adjacentEdges[0];
+	}
+	
+	/**
+	 * Remembers a traversed edge.
+	 * @return whether the edge was not already remembered
+	 */
+	private boolean addLastEdge(EventEdge edge) {
+		if (lastEdgeIds.get(edge.id)) {
+			return false;
+		}
+		lastEdgeIds.set(edge.id);
+		lastEdges.add(edge);
+		return true;
+	}
+	
+	private void clearLastEdges() {
+		for (EventEdge edge : lastEdges) {
+			lastEdgeIds.clear(edge.id);
+		}
+		lastEdges.clear();
+	}
+	
+	/**
+	 * Moves a parked agent on to where it would be at the given time had it wandered
+	 * rather than waited. Nothing arrived in its boundary while it waited, so each step it
+	 * missed is an idle step along the edge findIdleEdge picks. Call this before adding the
+	 * event that wakes the agent, so that the missed steps do not see it.
+	 * 
+	 * Once a step adds no edge to lastEdges, the next edge depends only on the vertex the
+	 * agent is at, so the walk soon goes round a fixed cycle. The cycle is found with Brent's
+	 * method, and whole laps of it are skipped in one sum. The first lap collected whatever
+	 * was on its edges, so later laps would have collected nothing.
+	 * @return the time the agent reaches the end of the edge it is on, when it moves next
+	 */
+	public double unpark(double time) {
+		parked = false;
+		Vertex mark = null; // Where the walk is checked against for a cycle
+		double markTime = 0;
+		int power = 1; // Steps before the mark moves on
+		int steps = 0; // Since the mark was set
+		while (endTime < time) {
+			
+			// Done with the last missed step
+			if (currentEdge != null) {
+				currentEdge.agents.remove(this);
+				lastEdge = currentEdge;
+				lastVertex = movingToVertex;
+			}
+			
+			EventEdge[] adjacentEdges = simulation.graph.getAdjacentEdgeArray(lastVertex);
+			currentEdge = findIdleEdge(adjacentEdges);
+			if (currentEdge == null) {
+				currentEdge = findLostEdge(adjacentEdges);
+			}
+			boolean newEdge = addLastEdge(currentEdge);
+			currentEdge.agents.add(this);
+			movingToVertex = currentEdge.getOtherVertex(lastVertex);
+			startTime = endTime;
+			endTime = startTime + getTraversalTime(currentEdge, 0);
+			
+			// Dead events are still picked up on the way
+			currentEdge.collectEvents(startTime, this);
+			
+			// A new edge changes the walk, so look for a cycle afresh
+			if (newEdge || mark == null) {
+				mark = movingToVertex;
+				markTime = endTime;
+				power = 1;
+				steps = 0;
+				continue;
+			}
+			
+			steps++;
+			if (movingToVertex == mark) {
+				// Skip every whole lap that ends before the given time
+				double lapTime = endTime - markTime;
+				double laps = Math.floor((time - endTime) / lapTime);
+				endTime += laps * lapTime;
+				startTime = endTime - getTraversalTime(currentEdge, 0);
+				mark = null;
+			} else if (steps == power) {
+				mark = movingToVertex;
+				markTime = endTime;
+				power *= 2;
+				steps = 0;
+			}
+		}
+		return endTime;
+	}
+	
+	public boolean isWithinBoundary(EventEdge edge) {
+		return boundary == null || boundary.get(edge.id); // null boundary allows the agent to move anywhere
+	}
+	
+	/**
+	 * Whether any edge within the agent's boundary has live events.
+	 */
+	private boolean hasEvents(double time) {
+		EventGraph graph = simulation.graph;
+		if (eventEdge >= 0 && isWithinBoundary(graph.getEdge(eventEdge)) && graph.getEdge(eventEdge).getPriority(time) > 0) {
+			return true;
+		}
+		
+		eventEdge = -1;
+		if (boundary == null) {
+			for (int id = 0; id < graph.getEdgeCount(); id++) {
+				if (graph.getEdge(id).getPriority(time) > 0) {
+					eventEdge = id;
+					break;
+				}
+			}
+		} else {
+			for (int id = boundary.nextSetBit(0); id >= 0; id = boundary.nextSetBit(id + 1)) {
+				if (graph.getEdge(id).getPriority(time) > 0) {
+					eventEdge = id;
+					break;
+				}
+			}
+		}
+		return eventEdge >= 0;
+	}
+	
 	private void findMovesWithTwoStepLookAhead(Vertex currentLocation) {
 
 		EventEdge bestFirstEdge = null;
 		EventEdge bestSecondEdge = null;
-		Set<EventEdge> adjacentEdges = simulation.graph.getAdjacentEdges(currentLocation);
-
-		// Only travel within the agent's boundary
-		if (boundary != null) {
-    		adjacentEdges.retainAll(boundary);
-    	}
+		EventEdge[] adjacentEdges = simulation.graph.getAdjacentEdgeArray(currentLocation);
 
 		// Looks for edge with highest priority
 		int highestPriority = -1;
 		for (EventEdge edge : adjacentEdges) {
+			
+			// Only travel within the agent's boundary
+			if (!isWithinBoundary(edge)) {
+				continue;
+			}
+			
 			int firstEdgePriority = edge.getPriority(startTime);
 			double traversalTime = getTraversalTime(edge, startTime);
 
 			// Get second step edges
 			Vertex firstVertex = edge.getOtherVertex(lastVertex);
-			Set<EventEdge> secondEdges = simulation.graph.getAdjacentEdges(firstVertex);
-			
-			// Do not consider the previous location
-			secondEdges.remove(edge);
+			EventEdge[] secondEdges = simulation.graph.getAdjacentEdgeArray(firstVertex);
 			
-			// Only travel within the agent's boundary
-			if (boundary != null) {
-        		secondEdges.retainAll(boundary);
-        	}
-			
-			// If there is more than one option, avoid edges that are being traversed
-			if (secondEdges.size() > 1) {
-				Set<EventEdge> nonTraversedEdges = new HashSet<EventEdge>();
-				for (EventEdge secondEdge : secondEdges) {
+			// Count the options, not considering the previous location
+			int options = 0;
+			int nonTraversedOptions = 0;
+			for (EventEdge secondEdge : secondEdges) {
+				if (secondEdge != edge && isWithinBoundary(secondEdge)) {
+					options++;
 					if (!secondEdge.isBeingTraversed()) {
-						nonTraversedEdges.add(secondEdge);
+						nonTraversedOptions++;
 					}
 				}
-				
-				// Make sure that there is at least one option
-				if (nonTraversedEdges.size() > 0) {
-					secondEdges = nonTraversedEdges;
-				} else {
-					System.out.println("Agent " + this + " has no other options!");
-				}
+			}
+			
+			// If there is more than one option, avoid edges that are being traversed
+			// Make sure that there is at least one option
+			boolean avoidTraversedEdges = options > 1 && nonTraversedOptions > 0;
+			if (options > 1 && nonTraversedOptions == 0) {
+				System.out.println("Agent " + this + " has no other options!");
 			}
 
 			for (EventEdge secondEdge : secondEdges) {
+				if (secondEdge == edge || !isWithinBoundary(secondEdge)) {
+					continue;
+				}
+				if (avoidTraversedEdges && secondEdge.isBeingTraversed()) {
+					continue;
+				}
 
 				int secondEdgePriority = secondEdge.getPriority(traversalTime + startTime);
 				int totalPriority = firstEdgePriority + secondEdgePriority;
@@ -258,15 +434,18 @@ public class Agent {
 		}
 		movements--;
 		
-		Set<EventEdge> adjacentEdges = simulation.graph.getAdjacentEdges(currentLocation);
-		
-		// Ignore all edges that we already considered
-		adjacentEdges.removeAll(possibleMovements);
+		EventEdge[] adjacentEdges = simulation.graph.getAdjacentEdgeArray(currentLocation);
 		
 		int highestPathValue = -1;
 		EventEdge bestMove = null;
 		
 		for (EventEdge edge : adjacentEdges) {
+			
+			// Ignore all edges that we already considered
+			if (possibleMovements.contains(edge)) {
+				continue;
+			}
+			
 			int edgePriority = edge.getPriority(time);
 			double traversalTime = getTraversalTime(edge, time);
 
@@ -287,9 +466,12 @@ public class Agent {
 	}
 	
 	private double getTraversalTime(EventEdge edge, double time) {
-		int edgePriority = edge.getPriority(time);
+		return getTraversalTime(edge, edge.getPriority(time));
+	}
+	
+	private double getTraversalTime(EventEdge edge, int edgePriority) {
 		double traversalTime = edgePriority * serviceTime;
-		traversalTime = Math.max(serviceTime, traversalTime); // Idle time is equal to service time
+		traversalTime = Math.max(serviceTime * edge.length, traversalTime); // Idle time is equal to service time over a unit length
 
 		return traversalTime;
 	}
@@ -0,0 +1,89 @@
+import java.util.Random;
+
+/**
+ * AliasTable picks indices at random in proportion to fixed weights, taking constant time
+ * for each pick however uneven the weights are.
+ * 
+ * The table is built with Vose's alias method. Every index owns a column of equal width,
+ * split between itself and one alias, so a pick is one uniform draw that chooses both the
+ * column and the side of the split.
+ * 
+ * @author mosca1337
+ *
+ */
+public class AliasTable {
+	
+	private final double[] probabilities; // Chance of keeping the column's own index
+	private final int[] aliases;
+	
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for (double weight : weights) {
+			if (!(weight >= 0) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException("Weights must be finite and not negative: " + weight);
+			}
+			total += weight;
+		}
+		if (n == 0 || total <= 0) {
+			throw new IllegalArgumentException("At least one weight must be positive");
+		}
+		
+		probabilities = new double[n];
+		aliases = new int[n];
+		
+		// Scale the weights so that the average column is full
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		
+		// Fill each under full column with part of an over full one
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			probabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1;
+			if (scaled[more] < 1) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+		
+		// What is left is full, up to rounding
+		while (largeCount > 0) {
+			int more = large[--largeCount];
+			probabilities[more] = 1;
+			aliases[more] = more;
+		}
+		while (smallCount > 0) {
+			int less = small[--smallCount];
+			probabilities[less] = 1;
+			aliases[less] = less;
+		}
+	}
+	
+	public int size() {
+		return probabilities.length;
+	}
+	
+	/**
+	 * Picks an index with chance proportional to its weight.
+	 */
+	public int sample(Random random) {
+		double u = random.nextDouble() * probabilities.length;
+		int column = (int) u;
+		return u - column < probabilities[column] ? column : aliases[column];
+	}
+}
@@ -0,0 +1,178 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ArrayEventStore keeps pending events in parallel primitive arrays instead of Event objects.
+ * 
+ * The arrays form a binary heap ordered by time of death, so expiring events only removes
+ * the dead ones from the top rather than passing over the whole store. Collecting and
+ * summing events are single passes over the arrays. No objects are created per event.
+ * 
+ * @author mosca1337
+ *
+ */
+public class ArrayEventStore extends EventStore {
+	private int[] priorities;
+	private double[] timesGenerated;
+	private double[] timesOfDeath; // Infinite when the priority never changes
+	private int size = 0;
+	
+	public ArrayEventStore() {
+		this(8);
+	}
+	
+	public ArrayEventStore(int capacity) {
+		capacity = Math.max(1, capacity);
+		priorities = new int[capacity];
+		timesGenerated = new double[capacity];
+		timesOfDeath = new double[capacity];
+	}
+
+	@Override
+	public void add(Event event) {
+		add(event.getInitialPriority(), event.timeGenerated, event.getLifeSpan());
+	}
+
+	@Override
+	public void add(int priority, double timeGenerated, long lifeSpan) {
+		if (size == priorities.length) {
+			grow();
+		}
+		double timeOfDeath = lifeSpan == 0 ? Double.POSITIVE_INFINITY : timeGenerated + lifeSpan;
+		
+		// Move parents that die later down until the new event's place is found
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (timesOfDeath[parent] <= timeOfDeath) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		priorities[i] = priority;
+		timesGenerated[i] = timeGenerated;
+		timesOfDeath[i] = timeOfDeath;
+	}
+	
+	/**
+	 * Removes the event that dies first.
+	 */
+	private void removeFirst() {
+		size--;
+		int last = size;
+		
+		// Move children that die sooner up until the last event's place is found
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && timesOfDeath[child + 1] < timesOfDeath[child]) {
+				child++;
+			}
+			if (timesOfDeath[last] <= timesOfDeath[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		move(last, i);
+	}
+	
+	private void move(int from, int to) {
+		priorities[to] = priorities[from];
+		timesGenerated[to] = timesGenerated[from];
+		timesOfDeath[to] = timesOfDeath[from];
+	}
+	
+	private void grow() {
+		int capacity = priorities.length * 2;
+		int[] newPriorities = new int[capacity];
+		double[] newTimesGenerated = new double[capacity];
+		double[] newTimesOfDeath = new double[capacity];
+		System.arraycopy(priorities, 0, newPriorities, 0, size);
+		System.arraycopy(timesGenerated, 0, newTimesGenerated, 0, size);
+		System.arraycopy(timesOfDeath, 0, newTimesOfDeath, 0, size);
+		priorities = newPriorities;
+		timesGenerated = newTimesGenerated;
+		timesOfDeath = newTimesOfDeath;
+	}
+	
+	private long getLifeSpan(int i) {
+		if (timesOfDeath[i] == Double.POSITIVE_INFINITY) {
+			return 0;
+		}
+		return (long) (timesOfDeath[i] - timesGenerated[i]);
+	}
+	
+	private int getPriority(int i, double time) {
+		return Event.getPriority(priorities[i], timesGenerated[i], getLifeSpan(i), time);
+	}
+	
+	private boolean isDead(int i, double time) {
+		return getPriority(i, time) <= 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getPriority(double time) {
+		int totalPriority = 0;
+		for (int i = 0; i < size; i++) {
+			totalPriority += getPriority(i, time);
+		}
+		return totalPriority;
+	}
+
+	@Override
+	public int collect(double time, EventCollector collector) {
+		// The collector may not add events, which would overwrite slots not yet read
+		int collected = size;
+		for (int i = 0; i < collected; i++) {
+			collector.eventCollected(getPriority(i, time), timesGenerated[i], time);
+		}
+		size = 0;
+		return collected;
+	}
+
+	@Override
+	public int expire(double time) {
+		// The dead events are the ones that die first
+		int dead = 0;
+		while (size > 0 && isDead(0, time)) {
+			removeFirst();
+			dead++;
+		}
+		return dead;
+	}
+
+	@Override
+	public Set<Event> removeDeadEvents(double time) {
+		Set<Event> deadEvents = new HashSet<Event>();
+		while (size > 0 && isDead(0, time)) {
+			deadEvents.add(new Event(priorities[0], timesGenerated[0], getLifeSpan(0)));
+			removeFirst();
+		}
+		return deadEvents;
+	}
+
+	@Override
+	public Set<Event> getEvents() {
+		// Events are not stored as objects, so this is a copy
+		Set<Event> events = new HashSet<Event>();
+		for (int i = 0; i < size; i++) {
+			events.add(new Event(priorities[i], timesGenerated[i], getLifeSpan(i)));
+		}
+		return events;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+	}
+}
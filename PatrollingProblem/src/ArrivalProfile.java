@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+/**
+ * ArrivalProfile is an event arrival rate that changes over time, such as different rates
+ * for each shift, a daily curve or short bursts. The profile repeats every cycle.
+ *
+ * Times are in 'ticks' and rates in events per 'tick'. The profile is kept as pieces of
+ * constant rate. Arrivals are found by inverting the expected number of arrivals over the
+ * pieces, so a piece costs nothing more than a constant rate. A profile whose rate also
+ * changes within a piece, such as a daily curve, uses the pieces as an envelope above the
+ * rate and thins the arrivals, keeping each with the chance rate / envelope.
+ *
+ * @author mosca1337
+ *
+ */
+public class ArrivalProfile {
+
+	// Pieces of constant rate, piece i runs from starts[i] to starts[i + 1]
+	private final double[] starts;
+	private final double[] rates;
+	public final double cycle;
+
+	/**
+	 * @param starts the start of each piece, from 0 and increasing
+	 * @param rates the arrival rate of each piece
+	 * @param cycle the length of the profile, after the start of the last piece
+	 */
+	public ArrivalProfile(double[] starts, double[] rates, double cycle) {
+		if (starts.length == 0 || starts.length != rates.length || starts[0] != 0) {
+			throw new IllegalArgumentException("Pieces must start at 0 and each have a rate");
+		}
+		double expected = 0;
+		for (int i = 0; i < starts.length; i++) {
+			double end = i + 1 < starts.length ? starts[i + 1] : cycle;
+			if (!(end > starts[i]) || Double.isInfinite(end)) {
+				throw new IllegalArgumentException("Pieces must have a length: " + starts[i] + " to " + end);
+			}
+			if (!(rates[i] >= 0) || Double.isInfinite(rates[i])) {
+				throw new IllegalArgumentException("Rates must be finite and not negative: " + rates[i]);
+			}
+			expected += rates[i] * (end - starts[i]);
+		}
+		if (expected <= 0) {
+			throw new IllegalArgumentException("No events would ever arrive");
+		}
+
+		// One more start closes the last piece
+		this.starts = Arrays.copyOf(starts, starts.length + 1);
+		this.starts[starts.length] = cycle;
+		this.rates = rates.clone();
+		this.cycle = cycle;
+	}
+
+	/**
+	 * The arrival rate at a time within the cycle. The rate of a piece unless overridden,
+	 * and never above it.
+	 */
+	public double getRate(double time) {
+		return rates[getPiece(time)];
+	}
+
+	/**
+	 * Whether the rate changes within pieces, so that arrivals must be thinned.
+	 */
+	protected boolean isThinned() {
+		return false;
+	}
+
+	private int getPiece(double time) {
+		int piece = Arrays.binarySearch(starts, time);
+		return Math.min(piece >= 0 ? piece : -piece - 2, rates.length - 1);
+	}
+
+	/**
+	 * Expected number of events in one cycle.
+	 */
+	public double getExpectedEvents() {
+		double expected = 0;
+		for (int i = 0; i < rates.length; i++) {
+			expected += rates[i] * (starts[i + 1] - starts[i]);
+		}
+		return expected;
+	}
+
+	/**
+	 * An event generation period that follows this profile from time 0.
+	 * @param random draws a unit exponential for each arrival, and a uniform for each
+	 * candidate arrival that may be thinned
+	 */
+	public Function eventPeriod(final int timeConstant, final Variates random) {
+		return new Function() {
+			private int piece = 0;
+			private double cycleStart = 0;
+			private double time = 0; // Within the cycle
+			private long lastArrival = 0; // Simulation time of the last event
+
+			public long function(long x) {
+				do {
+					// Walk the pieces until the expected number of arrivals reaches a unit exponential
+					double remaining = random.nextExponential();
+					while (remaining >= (starts[piece + 1] - time) * rates[piece]) {
+						remaining -= (starts[piece + 1] - time) * rates[piece];
+						piece++;
+						if (piece == rates.length) {
+							piece = 0;
+							cycleStart += cycle;
+						}
+						time = starts[piece];
+					}
+					time += remaining / rates[piece];
+				} while (isThinned() && random.nextDouble() * rates[piece] >= getRate(time));
+
+				// Round the arrival rather than the period, so rounding does not build up
+				long arrival = (long) Math.ceil((cycleStart + time) * timeConstant);
+				long period = arrival - lastArrival;
+				lastArrival = arrival;
+				return period;
+			}
+		};
+	}
+
+	/**
+	 * Constant rates for shifts that together make up the cycle.
+	 * @param lengths the length of each shift
+	 */
+	public static ArrivalProfile shifts(double[] lengths, double[] rates) {
+		double[] starts = new double[lengths.length];
+		double cycle = 0;
+		for (int i = 0; i < lengths.length; i++) {
+			starts[i] = cycle;
+			cycle += lengths[i];
+		}
+		return new ArrivalProfile(starts, rates, cycle);
+	}
+
+	/**
+	 * A daily curve, mean * (1 + amplitude * cos(2 pi (t - peak) / cycle)).
+	 * @param amplitude from 0 for a constant rate to 1 for no events at the quietest time
+	 * @param pieces the number of pieces of the envelope. More pieces reject fewer arrivals.
+	 */
+	public static ArrivalProfile diurnal(final double mean, final double amplitude, final double peak, final double cycle, int pieces) {
+		if (!(amplitude >= 0 && amplitude <= 1)) {
+			throw new IllegalArgumentException("Amplitude must be from 0 to 1: " + amplitude);
+		}
+		double[] starts = new double[pieces];
+		double[] rates = new double[pieces];
+		for (int i = 0; i < pieces; i++) {
+			starts[i] = cycle * i / pieces;
+			double end = cycle * (i + 1) / pieces;
+
+			// The curve peaks at the ends of a piece unless the peak is within it
+			double highest = Math.max(curve(mean, amplitude, peak, cycle, starts[i]), curve(mean, amplitude, peak, cycle, end));
+			double peakTime = peak - Math.floor(peak / cycle) * cycle;
+			if (peakTime >= starts[i] && peakTime <= end) {
+				highest = mean * (1 + amplitude);
+			}
+			rates[i] = highest;
+		}
+		return new ArrivalProfile(starts, rates, cycle) {
+			public double getRate(double time) {
+				return curve(mean, amplitude, peak, cycle, time);
+			}
+
+			protected boolean isThinned() {
+				return true;
+			}
+		};
+	}
+
+	private static double curve(double mean, double amplitude, double peak, double cycle, double time) {
+		return mean * (1 + amplitude * Math.cos(2 * Math.PI * (time - peak) / cycle));
+	}
+
+	/**
+	 * This profile with extra events arriving at the given rate for a while each cycle.
+	 */
+	public ArrivalProfile withBurst(final double start, final double length, final double rate) {
+		if (!(start >= 0 && length > 0 && start + length <= cycle)) {
+			throw new IllegalArgumentException("A burst must be within the cycle: " + start + " for " + length);
+		}
+
+		// Split the pieces at the ends of the burst
+		double[] newStarts = new double[rates.length + 2];
+		double[] newRates = new double[rates.length + 2];
+		int count = 0;
+		for (int i = 0; i < rates.length; i++) {
+			double[] cuts = {starts[i], start, start + length};
+			for (double cut : cuts) {
+				if (cut >= starts[i] && cut < starts[i + 1] && (count == 0 || cut > newStarts[count - 1])) {
+					newStarts[count] = cut;
+					newRates[count] = rates[i] + (cut >= start && cut < start + length ? rate : 0);
+					count++;
+				}
+			}
+		}
+
+		final ArrivalProfile base = this;
+		return new ArrivalProfile(Arrays.copyOf(newStarts, count), Arrays.copyOf(newRates, count), cycle) {
+			public double getRate(double time) {
+				return base.getRate(time) + (time >= start && time < start + length ? rate : 0);
+			}
+
+			protected boolean isThinned() {
+				return base.isThinned();
+			}
+		};
+	}
+}
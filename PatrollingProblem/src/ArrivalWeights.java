@@ -0,0 +1,70 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * ArrivalWeights reads how likely events are to arrive on each edge, so that incidents can
+ * cluster at doors and other hotspots.
+ * 
+ * Weight files have one edge per line:
+ * 
+ *   edgeId weight
+ * 
+ * Edge ids are those of the graph, the order of a topology file or the order in which a
+ * grid's edges are created. Edges that are not listed have a weight of 1. Blank lines and
+ * lines starting with '#' are ignored.
+ * 
+ * @author mosca1337
+ *
+ */
+public class ArrivalWeights {
+	
+	public static double[] load(File file, int edgeCount) throws IOException {
+		Reader reader = new FileReader(file);
+		try {
+			return read(reader, edgeCount);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	public static double[] read(Reader reader, int edgeCount) throws IOException {
+		double[] weights = new double[edgeCount];
+		Arrays.fill(weights, 1);
+		
+		BufferedReader lines = new BufferedReader(reader);
+		int lineNumber = 0;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.charAt(0) == '#') {
+				continue;
+			}
+			
+			String[] fields = line.split("\\s+");
+			if (fields.length != 2) {
+				throw new IOException("Line " + lineNumber + ": expected 'edgeId weight' but found '" + line + "'");
+			}
+			int edge;
+			double weight;
+			try {
+				edge = Integer.parseInt(fields[0]);
+				weight = Double.parseDouble(fields[1]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+			}
+			if (edge < 0 || edge >= edgeCount) {
+				throw new IOException("Line " + lineNumber + ": no edge " + edge);
+			}
+			if (!(weight >= 0) || Double.isInfinite(weight)) {
+				throw new IOException("Line " + lineNumber + ": invalid weight '" + fields[1] + "'");
+			}
+			weights[edge] = weight;
+		}
+		return weights;
+	}
+}
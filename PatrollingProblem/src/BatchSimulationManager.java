@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * BatchSimulationManager runs the same sweep as SimulationManager without a display. It
+ * loads no AWT or Swing classes, so it runs on machines without a display and skips the
+ * time AWT takes to start.
+ *
+ * Progress is reported on the console by a ConsoleProgress. The averaged results are
+ * written to simulationData.csv and the result of every simulation to a ResultsTable.
+ * Charts are not drawn. Finished simulations are recorded in a SweepJournal, so a sweep
+ * that is stopped carries on where it left off when it is run again with the same seed
+ * and folder. Points found in the folder's ResultCache are not run at all.
+ *
+ * Usage: BatchSimulationManager [threads] [seed] [folder]
+ *
+ * The number of threads defaults to the number of processors, and may be 0 for the same.
+ * The root seed defaults to that of SimulationManager, and the folder to the one that
+ * SimulationManager writes to.
+ *
+ * @author mosca1337
+ *
+ */
+public class BatchSimulationManager {
+
+	public final static double progressInterval = 1.0; // Seconds between progress reports
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		// Worker threads
+		int threads = SimulationSweep.threadsArgument(args);
+
+		// Root seed
+		long seed = SimulationManager.defaultSeed;
+		if (args.length > 1) {
+			seed = Long.parseLong(args[1]);
+		}
+
+		// Output folder
+		File simulationsFolder = SimulationManager.getDefaultFolder();
+		if (args.length > 2) {
+			simulationsFolder = new File(args[2]);
+		}
+		simulationsFolder.mkdirs();
+
+		// Carry on from the simulations already recorded
+		List<SimulationParameters> points = SimulationManager.getSweepPoints(seed);
+		final SweepJournal journal = new SweepJournal(new File(simulationsFolder, "simulationJournal.csv"), seed, points);
+		SimulationResult[] results = journal.open();
+		int journaled = points.size() - SimulationManager.countRemaining(results);
+		
+		// Only run the points that have never been run
+		final ResultCache cache = new ResultCache(new File(simulationsFolder, "cache"));
+		int cached = cache.fill(points, results);
+		long totalEvents = 0;
+		for (int i = 0; i < points.size(); i++) {
+			if (results[i] == null) {
+				totalEvents += points.get(i).totalEvents;
+			}
+		}
+		int remaining = SimulationManager.countRemaining(results);
+		System.err.println("There will be " + remaining + " simulations on " + threads + " threads, " + journaled + " already done and " + cached + " cached, writing to " + simulationsFolder + ".");
+
+		// Run all simulations
+		final ConsoleProgress progress = new ConsoleProgress(System.err, System.out, progressInterval);
+		progress.setTotalEvents(totalEvents);
+		try {
+			new SimulationSweep(threads).run(points, results, new SimulationSweep.Listener() {
+				public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result) {
+					journal.simulationFinished(finished, total, parameters, result);
+					cache.simulationFinished(finished, total, parameters, result);
+					progress.simulationFinished(finished, total, parameters, result);
+				}
+			});
+		} finally {
+			journal.close();
+		}
+
+		File simulationCSV = new File(simulationsFolder, "simulationData.csv");
+		SimulationManager.writeData(simulationCSV, SimulationManager.averageTrials(points, results));
+		SimulationManager.writeResults(simulationsFolder, points, results);
+		System.err.println("Results written to " + simulationCSV + ".");
+	}
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * BoundaryRebalancer shifts edges between the boundaries of neighbouring agents while a
+ * simulation runs, so that an agent that is falling behind hands part of its region to a
+ * neighbour that is keeping up.
+ *
+ * Each time it runs, the backlog of every region is measured as the priority waiting on its
+ * edges, along with how busy each agent has been since the last run. An agent whose backlog
+ * is well above a neighbour's, and who has been busier, gives that neighbour a few
+ * of the edges on their shared border. Only border edges move, so this costs one pass over
+ * the boundaries rather than a new partition of the graph.
+ *
+ * An agent keeps the edges around the vertex it is at and the vertex it is heading to, and
+ * its region stays connected.
+ *
+ * @author mosca1337
+ *
+ */
+public class BoundaryRebalancer {
+
+	// Settings
+	public double threshold = 0.5; // How much larger a backlog must be than a neighbour's
+	public double idleMargin = 0.5; // How much less of its time a neighbour must spend serving events
+	public int edgesPerAgent = 2; // Edges an agent may give away each time
+	public double smoothing = 0.2; // Weight of the latest measurement in the running averages
+
+	private EventGraph graph;
+	private Agent[] agents;
+	private double[] lastBusyTimes;
+	private double lastTime = 0;
+	private boolean measured = false;
+
+	// Scratch space, indexed by agent
+	private final double[] backlogs;
+	private final double[] utilizations;
+	private int[] owners; // Agent index, indexed by edge id
+	private int[] searchQueue = new int[64]; // Vertices searched to check a boundary stays connected
+	private int[] visits; // The last search to reach each vertex, indexed by vertex id
+	private int visit = 0;
+
+	public int edgesMoved = 0;
+
+	public BoundaryRebalancer(EventGraph graph, Set<Agent> agents) {
+		this.graph = graph;
+		this.agents = agents.toArray(new Agent[agents.size()]);
+		lastBusyTimes = new double[this.agents.length];
+		backlogs = new double[this.agents.length];
+		utilizations = new double[this.agents.length];
+		owners = new int[graph.getEdgeCount()];
+		visits = new int[graph.getVertexCount()];
+	}
+
+	/**
+	 * Measures every region and moves border edges from overloaded agents to their
+	 * neighbours.
+	 * @return the number of edges moved
+	 */
+	public int rebalance(double time) {
+		for (Agent agent : agents) {
+			if (agent.boundary == null) {
+				return 0; // Agents that may go anywhere need no balancing
+			}
+		}
+
+		// Measure each region
+		Arrays.fill(owners, -1);
+		double period = time - lastTime;
+		for (int i = 0; i < agents.length; i++) {
+			double backlog = 0;
+			BitSet boundary = agents[i].boundary;
+			for (int id = boundary.nextSetBit(0); id >= 0; id = boundary.nextSetBit(id + 1)) {
+				backlog += graph.getEdge(id).getPriority(time);
+				owners[id] = i;
+			}
+			double utilization = period > 0 ? (agents[i].busyTime - lastBusyTimes[i]) / period : 0;
+			lastBusyTimes[i] = agents[i].busyTime;
+			
+			// Short bursts should not move boundaries back and forth, so average over time
+			if (measured) {
+				backlogs[i] += smoothing * (backlog - backlogs[i]);
+				utilizations[i] += smoothing * (utilization - utilizations[i]);
+			} else {
+				backlogs[i] = backlog;
+				utilizations[i] = utilization;
+			}
+		}
+		lastTime = time;
+		measured = true;
+
+		// Most overloaded agents first
+		Integer[] donors = new Integer[agents.length];
+		for (int i = 0; i < donors.length; i++) {
+			donors[i] = i;
+		}
+		Arrays.sort(donors, new Comparator<Integer>() {
+			public int compare(Integer agent1, Integer agent2) {
+				int c = Double.compare(backlogs[agent2], backlogs[agent1]);
+				return c != 0 ? c : agent1 - agent2;
+			}
+		});
+
+		int moved = 0;
+		for (int donorIndex : donors) {
+			Agent donor = agents[donorIndex];
+			for (int given = 0; given < edgesPerAgent; given++) {
+				
+				// Give away the border edge that the neighbour surrounds the most, which keeps borders smooth
+				EventEdge bestEdge = null;
+				int bestReceiver = -1;
+				int bestScore = Integer.MIN_VALUE;
+				for (int id = donor.boundary.nextSetBit(0); id >= 0; id = donor.boundary.nextSetBit(id + 1)) {
+					EventEdge edge = graph.getEdge(id);
+					
+					// The agent stays where it is
+					if (isIncident(edge, donor.lastVertex) || isIncident(edge, donor.movingToVertex)) {
+						continue;
+					}
+					
+					// The least loaded neighbour on the other side of the edge
+					int receiver = -1;
+					for (int end = 0; end < 2; end++) {
+						Vertex vertex = end == 0 ? edge.vertex1 : edge.vertex2;
+						for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+							int neighbour = owners[adjacentEdge.id];
+							if (neighbour >= 0 && neighbour != donorIndex && !agents[neighbour].boundary.get(edge.id)
+									&& (receiver < 0 || backlogs[neighbour] < backlogs[receiver])) {
+								receiver = neighbour;
+							}
+						}
+					}
+					if (receiver < 0 || !shouldGive(donorIndex, receiver, edge, time)) {
+						continue;
+					}
+					
+					int score = countEdges(agents[receiver].boundary, edge) - countEdges(donor.boundary, edge);
+					if (score > bestScore && staysConnected(donor.boundary, edge)) {
+						bestEdge = edge;
+						bestReceiver = receiver;
+						bestScore = score;
+					}
+				}
+				if (bestEdge == null) {
+					break;
+				}
+				
+				// Hand the edge over
+				double priority = bestEdge.getPriority(time);
+				donor.boundary.clear(bestEdge.id);
+				agents[bestReceiver].boundary.set(bestEdge.id);
+				owners[bestEdge.id] = bestReceiver;
+				backlogs[donorIndex] -= priority;
+				backlogs[bestReceiver] += priority;
+				moved++;
+			}
+		}
+
+		edgesMoved += moved;
+		return moved;
+	}
+
+	private boolean shouldGive(int donor, int receiver, EventEdge edge, double time) {
+		double donorBacklog = backlogs[donor] - edge.getPriority(time);
+		return donorBacklog > (1 + threshold) * backlogs[receiver]
+				&& utilizations[receiver] <= utilizations[donor] - idleMargin;
+	}
+
+	private static boolean isIncident(EventEdge edge, Vertex vertex) {
+		return edge.vertex1 == vertex || edge.vertex2 == vertex;
+	}
+
+	/**
+	 * Whether a boundary stays connected without the given edge. Only a short way around
+	 * the edge is searched, so some edges that could move are kept.
+	 */
+	private boolean staysConnected(BitSet boundary, EventEdge edge) {
+		int edges1 = countEdges(boundary, edge.vertex1, edge);
+		int edges2 = countEdges(boundary, edge.vertex2, edge);
+		if (edges1 == 0 || edges2 == 0) {
+			return edges1 + edges2 > 0; // A dead end, unless it is the last edge
+		}
+
+		// Look for another way between the two ends close by
+		int[] queue = searchQueue;
+		int head = 0;
+		int tail = 0;
+		visit++;
+		queue[tail++] = edge.vertex1.id;
+		visits[edge.vertex1.id] = visit;
+		while (head < tail) {
+			Vertex vertex = graph.getVertex(queue[head++]);
+			for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+				if (adjacentEdge == edge || !boundary.get(adjacentEdge.id)) {
+					continue;
+				}
+				Vertex otherVertex = adjacentEdge.getOtherVertex(vertex);
+				if (otherVertex == edge.vertex2) {
+					return true;
+				}
+				if (visits[otherVertex.id] != visit) {
+					if (tail == queue.length) {
+						return false; // Too far to be sure
+					}
+					visits[otherVertex.id] = visit;
+					queue[tail++] = otherVertex.id;
+				}
+			}
+		}
+		return false;
+	}
+
+	private int countEdges(BitSet boundary, EventEdge edge) {
+		return countEdges(boundary, edge.vertex1, edge) + countEdges(boundary, edge.vertex2, edge);
+	}
+	
+	private int countEdges(BitSet boundary, Vertex vertex, EventEdge edge) {
+		int count = 0;
+		for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+			if (adjacentEdge != edge && boundary.get(adjacentEdge.id)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
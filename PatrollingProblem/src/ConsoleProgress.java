@@ -0,0 +1,95 @@
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * ConsoleProgress reports the progress of a sweep as lines of text, for machines without a
+ * display.
+ *
+ * Each report is written twice. A readable line goes to the error stream, with the time
+ * left, simulations per second and events per second:
+ *
+ *   120/4800 (2.5%), 12.3 simulations/s, 1.23M events/s, 0:00:10 elapsed, 0:06:20 left
+ *
+ * and a line of key=value pairs goes to the output stream for scripts to follow:
+ *
+ *   progress finished=120 total=4800 elapsed=10.012 simulations_per_second=12.3 events_per_second=1230000 remaining=380.2
+ *
+ * Reports are written at most once per interval, and always for the last simulation.
+ *
+ * @author mosca1337
+ *
+ */
+public class ConsoleProgress implements SimulationSweep.Listener {
+
+	private PrintStream human;
+	private PrintStream machine;
+	private long interval; // Nanoseconds between reports
+
+	private long startTime;
+	private long lastReport;
+	private long eventsFinished = 0;
+	private long eventsTotal = -1;
+
+	public ConsoleProgress(PrintStream human, PrintStream machine, double intervalSeconds) {
+		this.human = human;
+		this.machine = machine;
+		this.interval = (long) (intervalSeconds * 1e9);
+		startTime = System.nanoTime();
+		lastReport = startTime;
+	}
+
+	/**
+	 * Sets the number of events of all simulations, so that the time left follows the
+	 * work left rather than the number of simulations.
+	 */
+	public void setTotalEvents(long events) {
+		eventsTotal = events;
+	}
+
+	public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result) {
+		eventsFinished += parameters.totalEvents;
+
+		long now = System.nanoTime();
+		if (finished < total && now - lastReport < interval) {
+			return;
+		}
+		lastReport = now;
+
+		double elapsed = (now - startTime) / 1e9;
+		double simulationRate = elapsed > 0 ? finished / elapsed : 0;
+		double eventRate = elapsed > 0 ? eventsFinished / elapsed : 0;
+		double remaining;
+		if (eventsTotal > 0) {
+			remaining = eventRate > 0 ? (eventsTotal - eventsFinished) / eventRate : Double.NaN;
+		} else {
+			remaining = simulationRate > 0 ? (total - finished) / simulationRate : Double.NaN;
+		}
+
+		human.println(finished + "/" + total + " (" + String.format(Locale.ROOT, "%.1f", 100.0 * finished / total) + "%), "
+				+ String.format(Locale.ROOT, "%.1f", simulationRate) + " simulations/s, "
+				+ formatCount(eventRate) + " events/s, "
+				+ formatDuration(elapsed) + " elapsed, " + formatDuration(remaining) + " left");
+		machine.println(String.format(Locale.ROOT,
+				"progress finished=%d total=%d elapsed=%.3f simulations_per_second=%.3f events_per_second=%.0f remaining=%.1f",
+				finished, total, elapsed, simulationRate, eventRate, remaining));
+	}
+
+	private static String formatCount(double count) {
+		if (count >= 1e9) {
+			return String.format(Locale.ROOT, "%.2fG", count / 1e9);
+		} else if (count >= 1e6) {
+			return String.format(Locale.ROOT, "%.2fM", count / 1e6);
+		} else if (count >= 1e3) {
+			return String.format(Locale.ROOT, "%.2fk", count / 1e3);
+		}
+		return String.format(Locale.ROOT, "%.0f", count);
+	}
+
+	private static String formatDuration(double seconds) {
+		if (Double.isNaN(seconds) || Double.isInfinite(seconds)) {
+			return "?";
+		}
+		long total = Math.round(seconds);
+		return String.format(Locale.ROOT, "%d:%02d:%02d", total / 3600, total / 60 % 60, total % 60);
+	}
+}
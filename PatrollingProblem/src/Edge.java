@@ -4,6 +4,8 @@ import java.util.HashSet;
 
 public class Edge {
 	public String name;
+	public int id; // Dense index of this edge within its graph
+	public double length = 1; // Grid edges have a length of 1
 	public Vertex vertex1;
 	public Vertex vertex2;
 	private Set<Vertex> vertices = null;
@@ -6,41 +6,74 @@ public class Event {
 	public double timeGenerated;
 	public double timeCollected;
 	public double timeOfDeath;
-	private Function function = null;
-	private long lifeSpan = 0;
+	private long lifeSpan = 0; // Zero when the priority never changes
 	
 	public Event(int priority) {
 		this.priority = priority;
 	}
 	
-	public Event(int priority, double timeGenerated, Function lifeSpanFunction) {
+	public Event(int priority, double timeGenerated, Function lifeSpanFunction, int timeConstant) {
+		this(priority, timeGenerated, getLifeSpan(priority, lifeSpanFunction, timeConstant));
+		
+		// Constant priority without a function
+		if (lifeSpanFunction == null) {
+			timeOfDeath = 0;
+		}
+	}
+	
+	public Event(int priority, double timeGenerated, long lifeSpan) {
 		this.priority = priority;
 		this.timeGenerated = timeGenerated;
-		this.function = lifeSpanFunction;
-		
-		// Decreasing priority
-		if (function != null) {
-			lifeSpan = Simulation.timeConstant * function.function(1) * priority;
-			timeOfDeath = lifeSpan + timeGenerated;
+		this.lifeSpan = lifeSpan;
+		timeOfDeath = lifeSpan + timeGenerated;
+	}
+	
+	/**
+	 * The time it takes an event of the given priority to lose all of its priority.
+	 * Returns zero when the priority of the event does not change.
+	 */
+	public static long getLifeSpan(int priority, Function lifeSpanFunction, int timeConstant) {
+		if (lifeSpanFunction == null) {
+			return 0;
 		}
+		return timeConstant * lifeSpanFunction.function(1) * priority;
 	}
 	
 	public int getPriority(double time) {
+		return getPriority(priority, timeGenerated, lifeSpan, time);
+	}
+	
+	/**
+	 * The priority at the given time of an event with the given priority, time generated and lifespan.
+	 */
+	public static int getPriority(int priority, double timeGenerated, long lifeSpan, double time) {
+		return priority - getPriorityLost(priority, timeGenerated, lifeSpan, time);
+	}
+	
+	/**
+	 * How much priority an event has lost by the given time. A decreasing event loses
+	 * one priority every lifeSpan / priority, until it has none left at the end of its lifespan.
+	 */
+	public static int getPriorityLost(int priority, double timeGenerated, long lifeSpan, double time) {
 		
-		// Decreasing priority
-		if (function != null && (int) function.function(1) != 0) {
-			double currentTime = time - timeGenerated;
-			double percentOfPriority = currentTime / lifeSpan;
-			percentOfPriority = Math.max(0, percentOfPriority);
-			percentOfPriority = Math.min(1, percentOfPriority);
-			percentOfPriority = 1 - percentOfPriority;
-			return (int)Math.ceil(priority * percentOfPriority);
+		// Constant priority
+		if (lifeSpan == 0 || time <= timeGenerated) {
+			return 0;
 		}
 		
-		// Constant priority
+		// Decreasing priority
+		double lost = Math.floor((time - timeGenerated) * priority / lifeSpan);
+		return (int) Math.min(priority, lost);
+	}
+	
+	public int getInitialPriority() {
 		return priority;
 	}
 	
+	public long getLifeSpan() {
+		return lifeSpan;
+	}
+	
 	@Override
 	public String toString() {
 		return new Integer(priority).toString();
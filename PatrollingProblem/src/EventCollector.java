@@ -0,0 +1,13 @@
+
+/**
+ * An EventCollector is told about every event that is collected from an edge.
+ */
+public interface EventCollector {
+	
+	/**
+	 * @param priority the priority of the event when it was collected
+	 * @param timeGenerated the time the event was generated
+	 * @param timeCollected the time the event was collected
+	 */
+	public void eventCollected(int priority, double timeGenerated, double timeCollected);
+}
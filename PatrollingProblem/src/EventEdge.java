@@ -1,16 +1,40 @@
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 
 public class EventEdge extends Edge {
-	private Set<Event> events;
-	public Set<Agent> agents;
+	private EventStore events;
+	private PriorityAggregate priority = new PriorityAggregate();
+	public List<Agent> agents;
 
 	public EventEdge(String name, Vertex vertex1, Vertex vertex2) {
 		super(name, vertex1, vertex2);
 		this.name = name;
-		agents = new HashSet<Agent>();
-		events = new HashSet<Event>();
+		agents = new ArrayList<Agent>(2);
+		events = new ObjectEventStore();
+	}
+	
+	/**
+	 * Switches between keeping events as Event objects and keeping them in primitive arrays.
+	 * Pending events are moved to the new storage.
+	 */
+	public void setArrayStorage(boolean arrayStorage) {
+		if (arrayStorage == (events instanceof ArrayEventStore)) {
+			return;
+		}
+		
+		EventStore newEvents;
+		if (arrayStorage) {
+			newEvents = new ArrayEventStore();
+		} else {
+			newEvents = new ObjectEventStore();
+		}
+		for (Event event : events.getEvents()) {
+			newEvents.add(event);
+		}
+		events = newEvents;
 	}
 	
 	public boolean isBeingTraversed() {
@@ -19,51 +43,76 @@ public class EventEdge extends Edge {
 	
 	public void addEvent(Event event) {
 		events.add(event);
+		priority.add(event.getInitialPriority(), event.timeGenerated, event.getLifeSpan());
+	}
+	
+	public void addEvent(int priority, double timeGenerated, long lifeSpan) {
+		events.add(priority, timeGenerated, lifeSpan);
+		this.priority.add(priority, timeGenerated, lifeSpan);
 	}
 		
 	public Set<Event> collectEvents(double time) {
-		
-		// Set time collected for each event
-		for (Event event : events) {
+		final Set<Event> collectedEvents = new HashSet<Event>();
+		for (Event event : events.getEvents()) {
 			event.timeCollected = time;
+			collectedEvents.add(event);
 		}
-		
-		Set<Event> collectedEvents = new HashSet<Event>(events);
 		clearEvents();
 
 		return collectedEvents;
 	}
 	
+	/**
+	 * Collects all events, telling the collector about each one.
+	 * @return the number of events collected
+	 */
+	public int collectEvents(double time, EventCollector collector) {
+		priority.clear();
+		return events.collect(time, collector);
+	}
+	
 	public Set<Event> getEvents() {
-		return events;
+		return events.getEvents();
+	}
+	
+	public int getEventCount() {
+		return events.size();
 	}
 	
 	public void clearEvents() {
-		events = new HashSet<Event>();
+		events.clear();
+		priority.clear();
 	}
 	
+	/**
+	 * The total priority of the edge's events at the given time. This takes constant time
+	 * when times only move forward, and falls back to summing every event otherwise.
+	 */
 	public int getPriority(double time) {
-		int totalPriority = 0;
-		for (Event event : events) {
-			totalPriority += event.getPriority(time);
+		if (priority.canAnswer(time)) {
+			return priority.getPriority(time);
 		}
-		return totalPriority;
+		return events.getPriority(time);
+	}
+	
+	/**
+	 * The total priority of the edge's events at the given time, summed event by event.
+	 * Unlike getPriority this never changes the edge, so the visualization may call it.
+	 */
+	public int sumPriority(double time) {
+		return events.getPriority(time);
 	}
 	
 	public Set<Event> removeDeadEvents(double time) {
-		Set<Event> deadEvents = new HashSet<Event>();
-		Set<Event> liveEvents = new HashSet<Event>();
-		synchronized (events) {
-			for (Event event : events) {
-				if (event.getPriority(time) <= 0) {
-					deadEvents.add(event);
-				} else {
-					liveEvents.add(event);
-				}
-			}
-		}
-		events = liveEvents;
-		return deadEvents;
+		return events.removeDeadEvents(time);
+	}
+	
+	/**
+	 * Removes events that have no priority left.
+	 * @return the number of events removed
+	 */
+	public int expireDeadEvents(double time) {
+		return events.expire(time);
 	}
 	
 //	@Override
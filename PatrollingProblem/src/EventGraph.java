@@ -1,4 +1,10 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 
@@ -11,12 +17,23 @@ public class EventGraph {
 	public int width;
 	public int height;
 	
+	// Vertices and edges indexed by their ids
+	private Vertex[] vertexTable = new Vertex[16];
+	private EventEdge[] edgeTable = new EventEdge[16];
+	
+	// Adjacency index: the edges touching each vertex, indexed by vertex id
+	private EventEdge[][] adjacentEdges;
+	private List<List<EventEdge>> adjacentEdgeLists;
+	private LongHashSet adjacentPairs; // Pairs of adjacent vertex ids
+	private boolean isGrid = false; // Adjacency follows from vertex coordinates
+	
 	public EventGraph(int width, int height) {
 		super();
 		this.width = width;
 		this.height = height;
-		vertices = new HashSet<Vertex>(width * height);
-		edges = new HashSet<EventEdge>();
+		// Linked sets keep iteration in creation order so that seeded simulations are repeatable
+		vertices = new LinkedHashSet<Vertex>(width * height);
+		edges = new LinkedHashSet<EventEdge>();
 		vertexArray = new Vertex[width][height];
 		verticalEdges = new EventEdge[width][height-1];
 		horizontalEdges = new EventEdge[width-1][height];
@@ -25,7 +42,7 @@ public class EventGraph {
 		int vertexCount = 0;
 		for (int i=0; i < width; i++) {
 			for (int j=0; j < height; j++) {
-				Vertex vertex = new Vertex(new Integer(vertexCount).toString());
+				Vertex vertex = new Vertex(Integer.toString(vertexCount));
 				vertex.x = i;
 				vertex.y = j;
 				this.addVertex(vertex);
@@ -43,7 +60,7 @@ public class EventGraph {
 				// Horizontal edges
 				if (i != (width - 1)) {
 					Vertex adjacentVertex = vertexArray[i+1][j];
-					String edgeName = new Integer(edgeCount).toString();
+					String edgeName = Integer.toString(edgeCount);
 					EventEdge edge = new EventEdge(edgeName, thisVertex, adjacentVertex);
 					horizontalEdges[i][j] = edge;
 					this.addEdge(edge);
@@ -52,7 +69,7 @@ public class EventGraph {
 				// Vertical edges
 				if (j != (height - 1)) {
 					Vertex adjacentVertex = vertexArray[i][j+1];
-					String edgeName = new Integer(edgeCount).toString();
+					String edgeName = Integer.toString(edgeCount);
 					EventEdge edge = new EventEdge(edgeName, thisVertex, adjacentVertex);
 					verticalEdges[i][j] = edge;
 					this.addEdge(edge);
@@ -60,51 +77,194 @@ public class EventGraph {
 				}
 			}
 		}
+		
+		buildAdjacencyIndex();
+		isGrid = true;
+	}
+	
+	/**
+	 * Builds a graph from a topology that need not be a grid. Vertices and edges keep
+	 * the topology's ids, and the graph has no width, height or vertex array.
+	 */
+	public EventGraph(GraphTopology topology) {
+		super();
+		vertices = new LinkedHashSet<Vertex>(topology.getVertexCount() * 2);
+		edges = new LinkedHashSet<EventEdge>(topology.getEdgeCount() * 2);
+		
+		Vertex[] topologyVertices = new Vertex[topology.getVertexCount()];
+		for (int i = 0; i < topologyVertices.length; i++) {
+			topologyVertices[i] = new Vertex(topology.vertexNames[i]);
+			this.addVertex(topologyVertices[i]);
+		}
+		for (int i = 0; i < topology.getEdgeCount(); i++) {
+			EventEdge edge = new EventEdge(Integer.toString(i), topologyVertices[topology.vertices1[i]], topologyVertices[topology.vertices2[i]]);
+			edge.length = topology.lengths[i];
+			this.addEdge(edge);
+		}
+		
+		// The topology already lists the edges at each vertex, with the same ids
+		adjacentEdges = new EventEdge[topology.getVertexCount()][];
+		for (int vertex = 0; vertex < adjacentEdges.length; vertex++) {
+			adjacentEdges[vertex] = new EventEdge[topology.getDegree(vertex)];
+			for (int i = 0; i < adjacentEdges[vertex].length; i++) {
+				adjacentEdges[vertex][i] = edgeTable[topology.adjacentEdges[topology.offsets[vertex] + i]];
+			}
+		}
+		indexAdjacentEdges();
+	}
+	
+	public Vertex getVertex(int id) {
+		return vertexTable[id];
+	}
+	
+	public int getVertexCount() {
+		return vertices.size();
+	}
+	
+	/**
+	 * Returns the edge with the given id. Ids run from 0 to getEdgeCount() - 1 in the
+	 * order edges were added.
+	 */
+	public EventEdge getEdge(int id) {
+		return edgeTable[id];
+	}
+	
+	public int getEdgeCount() {
+		return edges.size();
 	}
 	
 	public void addVertex(Vertex vertex) {
-		vertices.add(vertex);
+		if (!vertices.contains(vertex)) {
+			vertex.id = vertices.size();
+			vertices.add(vertex);
+			if (vertex.id == vertexTable.length) {
+				vertexTable = Arrays.copyOf(vertexTable, vertexTable.length * 2);
+			}
+			vertexTable[vertex.id] = vertex;
+			adjacentEdges = null;
+			isGrid = false;
+		}
 	}
 	
 	public void addEdge(EventEdge edge) {
 		// Are the vertices of the edge in the graph?
-		boolean validEdge = true;
-		for (Vertex vertex : edge.getVertices()) {
-			if (!vertices.contains(vertex)) {
-				validEdge = true;
-			}
+		if (!contains(edge.vertex1) || !contains(edge.vertex2)) {
+			throw new IllegalArgumentException("Edge " + edge.name + " joins a vertex that is not in the graph");
 		}
-		if (validEdge) {
+		if (!edges.contains(edge)) {
+			edge.id = edges.size();
 			edges.add(edge);
+			if (edge.id == edgeTable.length) {
+				edgeTable = Arrays.copyOf(edgeTable, edgeTable.length * 2);
+			}
+			edgeTable[edge.id] = edge;
+			adjacentEdges = null;
+			isGrid = false;
 		}
 	}
 	
-	public boolean isAdjacent(Vertex vertex1, Vertex vertex2) {
-		// TODO: Find a faster implementation
-		for (Edge edge : edges) {
-			// Does any edge in the graph contain these two vertices?
-			if (edge.getVertices().contains(vertex1) &&
-				edge.getVertices().contains(vertex2)) {
-				return true;
+	/**
+	 * Indexes the edges touching every vertex so that neighbours can be found
+	 * without scanning all edges. Edges keep the order of the graph's edge set.
+	 */
+	private void buildAdjacencyIndex() {
+		
+		// Count the edges at each vertex
+		int[] degrees = new int[vertices.size()];
+		for (EventEdge edge : edges) {
+			degrees[edge.vertex1.id]++;
+			if (edge.vertex2 != edge.vertex1) {
+				degrees[edge.vertex2.id]++;
 			}
 		}
-		return false;
+		
+		adjacentEdges = new EventEdge[degrees.length][];
+		for (int i = 0; i < degrees.length; i++) {
+			adjacentEdges[i] = new EventEdge[degrees[i]];
+			degrees[i] = 0;
+		}
+		
+		// Fill the index
+		for (EventEdge edge : edges) {
+			adjacentEdges[edge.vertex1.id][degrees[edge.vertex1.id]++] = edge;
+			if (edge.vertex2 != edge.vertex1) {
+				adjacentEdges[edge.vertex2.id][degrees[edge.vertex2.id]++] = edge;
+			}
+		}
+		
+		indexAdjacentEdges();
 	}
 	
-	public Set<EventEdge> getAdjacentEdges(Vertex vertex) {
-		Set<EventEdge> adjacentEdges = new HashSet<EventEdge>();
+	/**
+	 * Builds the lookups that follow from the edges at each vertex.
+	 */
+	private void indexAdjacentEdges() {
+		
+		// Read only views
+		adjacentEdgeLists = new ArrayList<List<EventEdge>>(adjacentEdges.length);
+		for (EventEdge[] vertexEdges : adjacentEdges) {
+			adjacentEdgeLists.add(Collections.unmodifiableList(Arrays.asList(vertexEdges)));
+		}
+		
+		// Adjacent pairs
+		adjacentPairs = new LongHashSet(edges.size());
 		for (EventEdge edge : edges) {
-			if (edge.getVertices().contains(vertex)) {
-				adjacentEdges.add(edge);
-			}
+			adjacentPairs.add(pairKey(edge.vertex1.id, edge.vertex2.id));
+		}
+	}
+	
+	private static long pairKey(int id1, int id2) {
+		// The key does not depend on the order of the vertices
+		return ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+	}
+	
+	private boolean contains(Vertex vertex) {
+		return vertex.id < vertices.size() && vertexTable[vertex.id] == vertex;
+	}
+	
+	public boolean isAdjacent(Vertex vertex1, Vertex vertex2) {
+		if (adjacentEdges == null) {
+			buildAdjacencyIndex();
+		}
+		
+		// Are both vertices in this graph?
+		if (!contains(vertex1) || !contains(vertex2)) {
+			return false;
+		}
+		
+		// Grid neighbours are one step apart
+		if (isGrid) {
+			return Math.abs(vertex1.x - vertex2.x) + Math.abs(vertex1.y - vertex2.y) == 1;
 		}
 		
-		return adjacentEdges;
+		// Does any edge in the graph contain these two vertices?
+		return adjacentPairs.contains(pairKey(vertex1.id, vertex2.id));
+	}
+	
+	/**
+	 * Returns a read only list of the edges touching a vertex.
+	 */
+	public List<EventEdge> getAdjacentEdges(Vertex vertex) {
+		if (adjacentEdges == null) {
+			buildAdjacencyIndex();
+		}
+		return adjacentEdgeLists.get(vertex.id);
+	}
+	
+	/**
+	 * Returns the edges touching a vertex without copying them. 
+	 * The array is shared by the graph and must not be modified.
+	 */
+	public EventEdge[] getAdjacentEdgeArray(Vertex vertex) {
+		if (adjacentEdges == null) {
+			buildAdjacencyIndex();
+		}
+		return adjacentEdges[vertex.id];
 	}
 	
 	public Set<EventEdge> getEdges(int fromX, int fromY, int toX, int toY) {
 		
-		Set<EventEdge> edges = new HashSet<EventEdge>();
+		Set<EventEdge> edges = new LinkedHashSet<EventEdge>();
 		// Horizontal
 		for (int i = fromX; i < toX; i++) {
 			for (int j = fromY; j <= toY; j++) {
@@ -120,6 +280,35 @@ public class EventGraph {
 		return edges;
 	}
 	
+	/**
+	 * The ids of the edges within the rectangle of vertices from (fromX, fromY) to (toX, toY).
+	 */
+	public BitSet getEdgeIds(int fromX, int fromY, int toX, int toY) {
+		BitSet edgeIds = new BitSet(getEdgeCount());
+		// Horizontal
+		for (int i = fromX; i < toX; i++) {
+			for (int j = fromY; j <= toY; j++) {
+				edgeIds.set(horizontalEdges[i][j].id);
+			}
+		}
+		// Vertical
+		for (int i = fromX; i <= toX; i++) {
+			for (int j = fromY; j < toY; j++) {
+				edgeIds.set(verticalEdges[i][j].id);
+			}
+		}
+		return edgeIds;
+	}
+	
+	/**
+	 * Chooses how every edge stores its events. See EventEdge.setArrayStorage.
+	 */
+	public void setArrayStorage(boolean arrayStorage) {
+		for (EventEdge edge : edges) {
+			edge.setArrayStorage(arrayStorage);
+		}
+	}
+	
 	public Set<Event> removeDeadEvents(double time) {
 		Set<Event> deadEvents = new HashSet<Event>();
 		for (EventEdge edge : edges) {
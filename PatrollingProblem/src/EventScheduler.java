@@ -0,0 +1,162 @@
+
+/**
+ * EventScheduler is the simulation's queue of upcoming tasks.
+ * 
+ * Tasks are registered once and then referred to by index. Scheduling a task stores its
+ * index and time in a binary heap of primitive arrays, so scheduling neither boxes the time
+ * nor creates objects. Tasks scheduled for the same time run in the order they were scheduled.
+ * 
+ * @author mosca1337
+ *
+ */
+public class EventScheduler {
+	
+	// Registered tasks
+	private EventTask[] tasks;
+	private int taskCount = 0;
+	
+	// Heap of scheduled tasks
+	private double[] times;
+	private long[] orders;
+	private int[] indices;
+	private int size = 0;
+	private long scheduled = 0;
+	
+	// Time of the last task taken from the queue
+	private double time = 0;
+	
+	public EventScheduler(int capacity) {
+		capacity = Math.max(1, capacity);
+		tasks = new EventTask[capacity];
+		times = new double[capacity];
+		orders = new long[capacity];
+		indices = new int[capacity];
+	}
+	
+	/**
+	 * Registers a task so that it can be scheduled.
+	 * @return the index of the task
+	 */
+	public int register(EventTask task) {
+		if (taskCount == tasks.length) {
+			EventTask[] newTasks = new EventTask[taskCount * 2];
+			System.arraycopy(tasks, 0, newTasks, 0, taskCount);
+			tasks = newTasks;
+		}
+		tasks[taskCount] = task;
+		return taskCount++;
+	}
+	
+	public EventTask getTask(int index) {
+		return tasks[index];
+	}
+	
+	/**
+	 * Schedules the registered task to run at the given time.
+	 */
+	public void schedule(int index, double time) {
+		if (size == times.length) {
+			grow();
+		}
+		
+		// Move the new task up from the bottom of the heap
+		long order = scheduled++;
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(time, order, parent)) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		set(i, time, order, index);
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * The time of the earliest scheduled task.
+	 */
+	public double peekTime() {
+		return times[0];
+	}
+	
+	/**
+	 * Removes the earliest scheduled task. Its time is then given by getTime().
+	 * @return the index of the task
+	 */
+	public int poll() {
+		int index = indices[0];
+		time = times[0];
+		
+		// Move the last task down from the top of the heap
+		size--;
+		double lastTime = times[size];
+		long lastOrder = orders[size];
+		int lastIndex = indices[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && before(times[child + 1], orders[child + 1], child)) {
+				child++;
+			}
+			if (!before(times[child], orders[child], lastTime, lastOrder)) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		if (size > 0) {
+			set(i, lastTime, lastOrder, lastIndex);
+		}
+		return index;
+	}
+	
+	/**
+	 * The time of the task last removed by poll().
+	 */
+	public double getTime() {
+		return time;
+	}
+	
+	private boolean before(double time, long order, int i) {
+		return before(time, order, times[i], orders[i]);
+	}
+	
+	private static boolean before(double time1, long order1, double time2, long order2) {
+		return time1 < time2 || (time1 == time2 && order1 < order2);
+	}
+	
+	private void move(int from, int to) {
+		set(to, times[from], orders[from], indices[from]);
+	}
+	
+	private void set(int i, double time, long order, int index) {
+		times[i] = time;
+		orders[i] = order;
+		indices[i] = index;
+	}
+	
+	private void grow() {
+		int capacity = times.length * 2;
+		double[] newTimes = new double[capacity];
+		long[] newOrders = new long[capacity];
+		int[] newIndices = new int[capacity];
+		System.arraycopy(times, 0, newTimes, 0, size);
+		System.arraycopy(orders, 0, newOrders, 0, size);
+		System.arraycopy(indices, 0, newIndices, 0, size);
+		times = newTimes;
+		orders = newOrders;
+		indices = newIndices;
+	}
+}
@@ -0,0 +1,44 @@
+import java.util.Set;
+
+/**
+ * EventStore holds the pending events of an edge.
+ * 
+ * @author mosca1337
+ *
+ */
+public abstract class EventStore {
+	
+	public abstract void add(Event event);
+	
+	public abstract void add(int priority, double timeGenerated, long lifeSpan);
+	
+	public abstract int size();
+	
+	/**
+	 * The sum of the priorities of all events at the given time.
+	 */
+	public abstract int getPriority(double time);
+	
+	/**
+	 * Removes every event, telling the collector about each one. The collector must not add
+	 * events to the store while it is told.
+	 * @return the number of events collected
+	 */
+	public abstract int collect(double time, EventCollector collector);
+	
+	/**
+	 * Removes events that have no priority left at the given time.
+	 * @return the number of events removed
+	 */
+	public abstract int expire(double time);
+	
+	/**
+	 * Removes events that have no priority left at the given time.
+	 * @return the removed events
+	 */
+	public abstract Set<Event> removeDeadEvents(double time);
+	
+	public abstract Set<Event> getEvents();
+	
+	public abstract void clear();
+}
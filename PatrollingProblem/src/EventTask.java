@@ -1,9 +1,9 @@
 
 public abstract class EventTask {
 	
-	public Double executionTime;
+	public double executionTime;
 	
-	public EventTask(Double executionTime) {
+	public EventTask(double executionTime) {
 		this.executionTime = executionTime;
 	}
 	
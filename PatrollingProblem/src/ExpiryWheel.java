@@ -0,0 +1,119 @@
+
+/**
+ * ExpiryWheel removes events from their edges at the moment they die.
+ * 
+ * It is a hashed timing wheel: time is cut into slots of a fixed width and every scheduled
+ * death is put in the slot of its time, wrapping around the wheel. Moving the wheel forward
+ * only looks at slots that hold a death that is due, so the cost follows the number of
+ * deaths rather than the number of pending events.
+ * 
+ * Entries name an edge and a time. When an entry is due the edge removes every event that
+ * is dead by then, so entries for events that were collected first are harmless. Event
+ * stores keep their events by time of death, so this only touches the dead events.
+ * 
+ * @author mosca1337
+ *
+ */
+public class ExpiryWheel {
+	
+	private double slotWidth;
+	private int mask;
+	private long tick = 0; // Slot of the current time
+	private double time = Double.NEGATIVE_INFINITY;
+	
+	// Entries of each slot
+	private EventEdge[][] edges;
+	private double[][] times;
+	private int[] sizes;
+	private double[] earliest; // Earliest time in each slot
+	
+	/**
+	 * @param slotWidth the length of time covered by each slot
+	 * @param slots the number of slots, rounded up to a power of two
+	 */
+	public ExpiryWheel(double slotWidth, int slots) {
+		int capacity = 1;
+		while (capacity < slots) {
+			capacity *= 2;
+		}
+		this.slotWidth = slotWidth;
+		this.mask = capacity - 1;
+		edges = new EventEdge[capacity][4];
+		times = new double[capacity][4];
+		sizes = new int[capacity];
+		earliest = new double[capacity];
+		java.util.Arrays.fill(earliest, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Removes the dead events of the edge once the given time is reached.
+	 */
+	public void schedule(EventEdge edge, double time) {
+		long eventTick = Math.max(tick, (long) Math.floor(time / slotWidth));
+		int slot = (int) (eventTick & mask);
+		
+		int size = sizes[slot];
+		if (size == edges[slot].length) {
+			EventEdge[] newEdges = new EventEdge[size * 2];
+			double[] newTimes = new double[size * 2];
+			System.arraycopy(edges[slot], 0, newEdges, 0, size);
+			System.arraycopy(times[slot], 0, newTimes, 0, size);
+			edges[slot] = newEdges;
+			times[slot] = newTimes;
+		}
+		edges[slot][size] = edge;
+		times[slot][size] = time;
+		sizes[slot] = size + 1;
+		earliest[slot] = Math.min(earliest[slot], time);
+	}
+	
+	/**
+	 * Moves the wheel to the given time, removing every event that has died since.
+	 * @return the number of events removed
+	 */
+	public int advance(double time) {
+		if (time < this.time) {
+			return 0;
+		}
+		this.time = time;
+		
+		// Visit each slot at most once, even after a long jump
+		long lastTick = (long) Math.floor(time / slotWidth);
+		long firstTick = Math.max(tick, lastTick - mask);
+		int removed = 0;
+		for (long t = firstTick; t <= lastTick; t++) {
+			int slot = (int) (t & mask);
+			if (earliest[slot] <= time) {
+				removed += expire(slot, time);
+			}
+		}
+		tick = lastTick;
+		return removed;
+	}
+	
+	private int expire(int slot, double time) {
+		EventEdge[] slotEdges = edges[slot];
+		double[] slotTimes = times[slot];
+		int removed = 0;
+		
+		// Keep entries that are not due, which may belong to a later turn of the wheel
+		int kept = 0;
+		double keptEarliest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < sizes[slot]; i++) {
+			if (slotTimes[i] <= time) {
+				removed += slotEdges[i].expireDeadEvents(time);
+			} else {
+				slotEdges[kept] = slotEdges[i];
+				slotTimes[kept] = slotTimes[i];
+				keptEarliest = Math.min(keptEarliest, slotTimes[i]);
+				kept++;
+			}
+		}
+		for (int i = kept; i < sizes[slot]; i++) {
+			slotEdges[i] = null;
+		}
+		sizes[slot] = kept;
+		earliest[slot] = keptEarliest;
+		return removed;
+	}
+}
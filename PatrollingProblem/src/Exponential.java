@@ -1,12 +1,16 @@
 import java.util.Random;
 
 public class Exponential {
-	private Random randomNumber = new Random();
+	private Variates randomNumber;
 	double mean;
 
 	public Exponential(double m) {
+		this(m, new Variates());
+	}
+
+	public Exponential(double m, Random random) {
 		mean = m;
-		randomNumber.setSeed((long) (Math.random() * 1878892440l));
+		randomNumber = random instanceof Variates ? (Variates) random : new Variates(random.nextLong());
 	}
 
 	public void setMean(double m) {
@@ -14,8 +18,7 @@ public class Exponential {
 	}
 
 	public double nextExponential() {
-		randomNumber.nextDouble();
-		return (-1 * mean * Math.log(1 - randomNumber.nextDouble()));
+		return mean * randomNumber.nextExponential();
 	}
 
 }
\ No newline at end of file
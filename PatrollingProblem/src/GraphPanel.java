@@ -78,7 +78,8 @@ public class GraphPanel extends JPanel implements Runnable {
     		boundaryColors.put(agent, randomColor);
 
     		if (agent.boundary != null) {
-        		for (EventEdge edge : agent.boundary) {
+        		for (int id = agent.boundary.nextSetBit(0); id >= 0; id = agent.boundary.nextSetBit(id + 1)) {
+        			EventEdge edge = simulation.graph.getEdge(id);
 
             		// Blend colors if two agent's boundary's share an edge
             		if (edgeColors.containsKey(edge)) {
@@ -226,7 +227,7 @@ public class GraphPanel extends JPanel implements Runnable {
 		   g.drawLine(pointA.x, pointA.y, pointB.x, pointB.y);
 	   }
 	   
-	   int priority = edge.getPriority(now.getTime() - simulation.startTime);
+	   int priority = edge.sumPriority(now.getTime() - simulation.startTime);
 	   Color redColor;
 	   Font font;
 	   if (priority == 0) {
@@ -239,14 +240,14 @@ public class GraphPanel extends JPanel implements Runnable {
 	   g.setFont(font);
 	   g.setColor(redColor);
 	   
-	   String priorityString = new Integer(edge.getPriority(now.getTime() - simulation.startTime)).toString();
+	   String priorityString = new Integer(priority).toString();
 	   FontMetrics metrics = g.getFontMetrics(font);
 	   int stringWidth = metrics.stringWidth(priorityString);
 	   int stringHeight = metrics.getHeight();
 	   g.drawString(priorityString, (pointB.x + pointA.x)/2 - stringWidth/2 + (int) (heightPercentage * stringWidth), (pointB.y + pointA.y)/2 - (int) (stringHeight/2 * widthPercentage));
 
 	   // Event beads
-	   int events = edge.getEvents().size();
+	   int events = edge.getEventCount();
 	   int spacing = beadthPlacementLength / (events + 1);
 	   
 	   int beadDistance = visibleEdgeLength - beadthPlacementLength + spacing;
@@ -355,7 +356,7 @@ public class GraphPanel extends JPanel implements Runnable {
 	   int centerY = y + clockRadius;
 	   
 	   long timeEllapsed = System.currentTimeMillis() - (long) simulation.startTime;
-	   double clockPercentage = (double) (timeEllapsed % Simulation.timeConstant) / Simulation.timeConstant;
+	   double clockPercentage = (double) (timeEllapsed % simulation.timeConstant) / simulation.timeConstant;
 	   int transparency = (int) ((clockPercentage - .5) * 256);
 	   transparency = Math.abs(transparency) - 50;
 	   transparency = Math.max(transparency, 0) * 2;
@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * GraphPartitioner splits the edges of a graph into connected regions of similar load,
+ * one for each agent.
+ *
+ * The load of an edge is its expected event arrival rate multiplied by its length, the
+ * cost of traversing it. Regions are grown from seed vertices that are spread as far apart
+ * as possible. The region with the least load always takes the next unclaimed edge next to
+ * it, so regions stay connected and grow evenly into whatever space is left. Every separate
+ * component of the graph needs a region of its own, since no agent could reach its edges
+ * from another.
+ *
+ * @author mosca1337
+ *
+ */
+public class GraphPartitioner {
+
+	private EventGraph graph;
+	private Vertex[] vertices; // Indexed by vertex id
+	private EventEdge[] edges; // Indexed by edge id
+	private double[] loads; // Indexed by edge id
+
+	// Balancing
+	public double balanceTolerance = 0.02; // How much heavier than average a region may be
+	public int maximumBalanceMovesPerEdge = 16; // A 500x500 grid split 300 ways takes about 3
+	private int[] searchQueue = new int[64]; // Vertices searched to check a region stays connected
+	
+	// The vertex that each region was grown from
+	public Vertex[] seeds;
+
+	/**
+	 * @param arrivalRates the expected arrival rate of each edge by edge id, or null if
+	 * events arrive on every edge at the same rate
+	 */
+	public GraphPartitioner(EventGraph graph, double[] arrivalRates) {
+		this.graph = graph;
+		vertices = new Vertex[graph.getVertexCount()];
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i] = graph.getVertex(i);
+		}
+		edges = new EventEdge[graph.getEdgeCount()];
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = graph.getEdge(i);
+		}
+
+		loads = new double[edges.length];
+		for (EventEdge edge : edges) {
+			double rate = arrivalRates == null ? 1 : arrivalRates[edge.id];
+			loads[edge.id] = rate * edge.length;
+		}
+	}
+
+	/**
+	 * Splits the graph into the given number of regions.
+	 * @return the ids of the edges of each region, in the order of the seeds
+	 */
+	public List<BitSet> partition(int regionCount) {
+		if (regionCount < 1 || regionCount > edges.length) {
+			throw new IllegalArgumentException("Cannot split " + edges.length + " edges into " + regionCount + " regions");
+		}
+		int components = countComponents();
+		if (regionCount < components) {
+			throw new IllegalArgumentException("Cannot split a graph of " + components + " separate components into " + regionCount + " regions, each component needs at least one");
+		}
+		chooseSeeds(regionCount);
+
+		// Vertices waiting to be grown from, per region
+		int[][] queues = new int[regionCount][];
+		int[] heads = new int[regionCount];
+		int[] tails = new int[regionCount];
+
+		final double[] regionLoads = new double[regionCount];
+		int[] owners = new int[edges.length];
+		for (int i = 0; i < owners.length; i++) {
+			owners[i] = -1;
+		}
+
+		// Lightest region first, ties go to the earlier region
+		PriorityQueue<Integer> growing = new PriorityQueue<Integer>(regionCount, new Comparator<Integer>() {
+			public int compare(Integer region1, Integer region2) {
+				int c = Double.compare(regionLoads[region1], regionLoads[region2]);
+				return c != 0 ? c : region1 - region2;
+			}
+		});
+		for (int region = 0; region < regionCount; region++) {
+			queues[region] = new int[8];
+			queues[region][tails[region]++] = seeds[region].id;
+			growing.add(region);
+		}
+
+		while (!growing.isEmpty()) {
+			int region = growing.poll();
+
+			// Claim the first free edge next to the region
+			EventEdge edge = null;
+			while (edge == null && heads[region] < tails[region]) {
+				Vertex vertex = vertices[queues[region][heads[region]]];
+				for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+					if (owners[adjacentEdge.id] < 0) {
+						edge = adjacentEdge;
+						break;
+					}
+				}
+				if (edge == null) {
+					heads[region]++; // Nothing left around this vertex
+				} else {
+					owners[edge.id] = region;
+					regionLoads[region] += loads[edge.id];
+
+					// Grow from the far end of the edge later
+					if (tails[region] == queues[region].length) {
+						queues[region] = compact(queues[region], heads[region], tails[region]);
+						tails[region] -= heads[region];
+						heads[region] = 0;
+					}
+					queues[region][tails[region]++] = edge.getOtherVertex(vertex).id;
+				}
+			}
+
+			// A region that is walled in stops growing
+			if (edge != null) {
+				growing.add(region);
+			}
+		}
+
+		balance(owners, regionLoads);
+		
+		List<BitSet> regions = new ArrayList<BitSet>(regionCount);
+		for (int region = 0; region < regionCount; region++) {
+			regions.add(new BitSet(edges.length));
+		}
+		for (EventEdge edge : edges) {
+			regions.get(owners[edge.id]).set(edge.id);
+		}
+		return regions;
+	}
+
+	/**
+	 * The number of separate components of the graph, not counting vertices without edges.
+	 */
+	private int countComponents() {
+		boolean[] reached = new boolean[vertices.length];
+		int[] queue = new int[vertices.length];
+		int components = 0;
+		for (EventEdge start : edges) {
+			if (reached[start.vertex1.id]) {
+				continue;
+			}
+			components++;
+			
+			// Reach everything connected to the edge
+			int head = 0;
+			int tail = 0;
+			reached[start.vertex1.id] = true;
+			queue[tail++] = start.vertex1.id;
+			while (head < tail) {
+				Vertex vertex = vertices[queue[head++]];
+				for (EventEdge edge : graph.getAdjacentEdgeArray(vertex)) {
+					Vertex otherVertex = edge.getOtherVertex(vertex);
+					if (!reached[otherVertex.id]) {
+						reached[otherVertex.id] = true;
+						queue[tail++] = otherVertex.id;
+					}
+				}
+			}
+		}
+		return components;
+	}
+
+	/**
+	 * Picks seed vertices far apart from each other. Each new seed is the vertex with the
+	 * most steps to its nearest seed, and vertices that no seed reaches come first, so each
+	 * component gets a seed.
+	 */
+	private void chooseSeeds(int regionCount) {
+		seeds = new Vertex[regionCount];
+		int[] distances = new int[vertices.length];
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = Integer.MAX_VALUE;
+		}
+		int[] queue = new int[vertices.length];
+		boolean[] hasEdges = new boolean[vertices.length];
+		for (EventEdge edge : edges) {
+			hasEdges[edge.vertex1.id] = true;
+			hasEdges[edge.vertex2.id] = true;
+		}
+
+		// Start from the first vertex that has an edge
+		Vertex seed = edges[0].vertex1;
+		for (int region = 0; region < regionCount; region++) {
+			seeds[region] = seed;
+
+			// Breadth first search from the new seed, keeping the distance to the nearest seed
+			int head = 0;
+			int tail = 0;
+			distances[seed.id] = 0;
+			queue[tail++] = seed.id;
+			while (head < tail) {
+				Vertex vertex = vertices[queue[head++]];
+				int distance = distances[vertex.id] + 1;
+				for (EventEdge edge : graph.getAdjacentEdgeArray(vertex)) {
+					Vertex otherVertex = edge.getOtherVertex(vertex);
+					if (distance < distances[otherVertex.id]) {
+						distances[otherVertex.id] = distance;
+						queue[tail++] = otherVertex.id;
+					}
+				}
+			}
+
+			// The next seed is the vertex furthest from all seeds
+			int furthest = -1;
+			for (int i = 0; i < distances.length; i++) {
+				if (hasEdges[i] && (furthest < 0 || distances[i] > distances[furthest])) {
+					furthest = i;
+				}
+			}
+			seed = vertices[furthest];
+		}
+	}
+
+	/**
+	 * Evens out the regions by handing edges on the border of two regions from the
+	 * heavier region to the lighter one. Regions that were walled in while growing take
+	 * load from their neighbours, which in turn take load from theirs.
+	 */
+	private void balance(int[] owners, double[] regionLoads) {
+		int[] visits = new int[vertices.length];
+		int visit = 0;
+		
+		// Edges to look at, starting with all of them. Edges next to a moved edge are looked at again.
+		int[] queue = new int[edges.length];
+		boolean[] queued = new boolean[edges.length];
+		int head = 0;
+		int size = edges.length;
+		for (int i = 0; i < edges.length; i++) {
+			queue[i] = i;
+			queued[i] = true;
+		}
+		
+		long maximumMoves = (long) maximumBalanceMovesPerEdge * edges.length;
+		long moves = 0;
+		long movesAtLastPass = 0;
+		while (moves < maximumMoves) {
+			
+			// Loads change all over the graph, so look at every edge again until nothing moves
+			if (size == 0) {
+				if (moves == movesAtLastPass || isBalanced(regionLoads)) {
+					break;
+				}
+				movesAtLastPass = moves;
+				for (int i = 0; i < edges.length; i++) {
+					queue[i] = i;
+					queued[i] = true;
+				}
+				head = 0;
+				size = edges.length;
+			}
+			
+			EventEdge edge = edges[queue[head]];
+			queued[edge.id] = false;
+			head = (head + 1) % queue.length;
+			size--;
+			int donor = owners[edge.id];
+			
+			// The lightest other region that touches the edge
+			int receiver = -1;
+			for (int end = 0; end < 2; end++) {
+				Vertex vertex = end == 0 ? edge.vertex1 : edge.vertex2;
+				for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+					int region = owners[adjacentEdge.id];
+					if (region != donor && (receiver < 0 || regionLoads[region] < regionLoads[receiver])) {
+						receiver = region;
+					}
+				}
+			}
+			
+			// Only move edges that bring the two regions closer
+			if (receiver < 0 || regionLoads[donor] - regionLoads[receiver] <= loads[edge.id]) {
+				continue;
+			}
+			if (!canGiveAway(edge, donor, owners, visits, ++visit)) {
+				continue;
+			}
+			owners[edge.id] = receiver;
+			regionLoads[donor] -= loads[edge.id];
+			regionLoads[receiver] += loads[edge.id];
+			moves++;
+			
+			// The border has moved
+			for (int end = 0; end < 2; end++) {
+				Vertex vertex = end == 0 ? edge.vertex1 : edge.vertex2;
+				for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+					if (!queued[adjacentEdge.id]) {
+						queued[adjacentEdge.id] = true;
+						queue[(head + size) % queue.length] = adjacentEdge.id;
+						size++;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Whether the heaviest region is within the balance tolerance of the average.
+	 */
+	private boolean isBalanced(double[] regionLoads) {
+		double total = 0;
+		double heaviest = 0;
+		for (double load : regionLoads) {
+			total += load;
+			heaviest = Math.max(heaviest, load);
+		}
+		return heaviest <= (1 + balanceTolerance) * total / regionLoads.length;
+	}
+	
+	/**
+	 * Whether a region stays connected, and keeps its seed, without the given edge.
+	 */
+	private boolean canGiveAway(EventEdge edge, int region, int[] owners, int[] visits, int visit) {
+		int edges1 = countEdges(edge.vertex1, edge, region, owners);
+		int edges2 = countEdges(edge.vertex2, edge, region, owners);
+		if (edges1 == 0 && edges2 == 0) {
+			return false; // The region's last edge
+		}
+		if (edges1 == 0) {
+			return edge.vertex1 != seeds[region]; // A dead end
+		}
+		if (edges2 == 0) {
+			return edge.vertex2 != seeds[region];
+		}
+		
+		// Look for another way between the two ends close by
+		int[] queue = searchQueue;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = edge.vertex1.id;
+		visits[edge.vertex1.id] = visit;
+		while (head < tail) {
+			Vertex vertex = vertices[queue[head++]];
+			for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+				if (adjacentEdge == edge || owners[adjacentEdge.id] != region) {
+					continue;
+				}
+				Vertex otherVertex = adjacentEdge.getOtherVertex(vertex);
+				if (otherVertex == edge.vertex2) {
+					return true;
+				}
+				if (visits[otherVertex.id] != visit) {
+					if (tail == queue.length) {
+						return false; // Too far to be sure
+					}
+					visits[otherVertex.id] = visit;
+					queue[tail++] = otherVertex.id;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private int countEdges(Vertex vertex, EventEdge edge, int region, int[] owners) {
+		int count = 0;
+		for (EventEdge adjacentEdge : graph.getAdjacentEdgeArray(vertex)) {
+			if (adjacentEdge != edge && owners[adjacentEdge.id] == region) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	private static int[] compact(int[] queue, int head, int tail) {
+		int[] newQueue = queue;
+		if (tail - head > queue.length / 2) {
+			newQueue = new int[queue.length * 2];
+		}
+		System.arraycopy(queue, head, newQueue, 0, tail - head);
+		return newQueue;
+	}
+}
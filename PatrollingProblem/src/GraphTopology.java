@@ -0,0 +1,201 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GraphTopology is the layout of a patrol network that is not a grid, such as corridors
+ * or road segments, kept in compressed sparse row (CSR) form.
+ *
+ * Vertices and edges are numbered densely from zero. The edges touching vertex v are
+ * adjacentEdges[offsets[v]] to adjacentEdges[offsets[v+1] - 1], in edge order.
+ *
+ * Topologies are read from edge list files with one edge per line:
+ *
+ *   vertex1 vertex2 [length]
+ *
+ * Vertices may be named by any word and are numbered in the order they first appear.
+ * The length of an edge defaults to 1, which is the length of a grid edge. Blank lines
+ * and lines starting with '#' are ignored.
+ *
+ * @author mosca1337
+ *
+ */
+public class GraphTopology {
+
+	// Vertices
+	public final String[] vertexNames;
+	public final int[] offsets;
+	public final int[] adjacentEdges;
+
+	// Edges
+	public final int[] vertices1;
+	public final int[] vertices2;
+	public final double[] lengths;
+
+	public GraphTopology(String[] vertexNames, int[] vertices1, int[] vertices2, double[] lengths) {
+		this.vertexNames = vertexNames;
+		this.vertices1 = vertices1;
+		this.vertices2 = vertices2;
+		this.lengths = lengths;
+
+		// Count the edges at each vertex
+		int vertexCount = vertexNames.length;
+		offsets = new int[vertexCount + 1];
+		for (int edge = 0; edge < vertices1.length; edge++) {
+			offsets[vertices1[edge] + 1]++;
+			if (vertices2[edge] != vertices1[edge]) {
+				offsets[vertices2[edge] + 1]++;
+			}
+		}
+		for (int vertex = 0; vertex < vertexCount; vertex++) {
+			offsets[vertex + 1] += offsets[vertex];
+		}
+
+		// Fill the rows
+		adjacentEdges = new int[offsets[vertexCount]];
+		int[] next = new int[vertexCount];
+		System.arraycopy(offsets, 0, next, 0, vertexCount);
+		for (int edge = 0; edge < vertices1.length; edge++) {
+			adjacentEdges[next[vertices1[edge]]++] = edge;
+			if (vertices2[edge] != vertices1[edge]) {
+				adjacentEdges[next[vertices2[edge]]++] = edge;
+			}
+		}
+	}
+
+	public int getVertexCount() {
+		return vertexNames.length;
+	}
+
+	public int getEdgeCount() {
+		return vertices1.length;
+	}
+
+	public int getDegree(int vertex) {
+		return offsets[vertex + 1] - offsets[vertex];
+	}
+
+	public static GraphTopology load(File file) throws IOException {
+		Reader reader = new FileReader(file);
+		try {
+			return read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static GraphTopology read(Reader reader) throws IOException {
+		BufferedReader lines = new BufferedReader(reader);
+		Map<String, Integer> vertexIds = new HashMap<String, Integer>();
+		String[] names = new String[16];
+		int[] vertices1 = new int[16];
+		int[] vertices2 = new int[16];
+		double[] lengths = new double[16];
+		int edgeCount = 0;
+
+		int lineNumber = 0;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.charAt(0) == '#') {
+				continue;
+			}
+
+			String[] fields = split(line);
+			if (fields == null) {
+				throw new IOException("Line " + lineNumber + ": expected 'vertex1 vertex2 [length]' but found '" + line + "'");
+			}
+			double length = 1;
+			if (fields.length == 3) {
+				try {
+					length = Double.parseDouble(fields[2]);
+				} catch (NumberFormatException e) {
+					length = Double.NaN;
+				}
+				if (!(length > 0) || Double.isInfinite(length)) {
+					throw new IOException("Line " + lineNumber + ": invalid edge length '" + fields[2] + "'");
+				}
+			}
+
+			// Number the vertices as they are found
+			int[] ends = new int[2];
+			for (int i = 0; i < 2; i++) {
+				Integer id = vertexIds.get(fields[i]);
+				if (id == null) {
+					id = vertexIds.size();
+					vertexIds.put(fields[i], id);
+					if (id == names.length) {
+						String[] newNames = new String[names.length * 2];
+						System.arraycopy(names, 0, newNames, 0, names.length);
+						names = newNames;
+					}
+					names[id] = fields[i];
+				}
+				ends[i] = id;
+			}
+
+			if (edgeCount == vertices1.length) {
+				int capacity = edgeCount * 2;
+				int[] newVertices1 = new int[capacity];
+				int[] newVertices2 = new int[capacity];
+				double[] newLengths = new double[capacity];
+				System.arraycopy(vertices1, 0, newVertices1, 0, edgeCount);
+				System.arraycopy(vertices2, 0, newVertices2, 0, edgeCount);
+				System.arraycopy(lengths, 0, newLengths, 0, edgeCount);
+				vertices1 = newVertices1;
+				vertices2 = newVertices2;
+				lengths = newLengths;
+			}
+			vertices1[edgeCount] = ends[0];
+			vertices2[edgeCount] = ends[1];
+			lengths[edgeCount] = length;
+			edgeCount++;
+		}
+
+		// Trim the arrays
+		String[] vertexNames = new String[vertexIds.size()];
+		System.arraycopy(names, 0, vertexNames, 0, vertexNames.length);
+		int[] trimmed1 = new int[edgeCount];
+		int[] trimmed2 = new int[edgeCount];
+		double[] trimmedLengths = new double[edgeCount];
+		System.arraycopy(vertices1, 0, trimmed1, 0, edgeCount);
+		System.arraycopy(vertices2, 0, trimmed2, 0, edgeCount);
+		System.arraycopy(lengths, 0, trimmedLengths, 0, edgeCount);
+
+		return new GraphTopology(vertexNames, trimmed1, trimmed2, trimmedLengths);
+	}
+
+	/**
+	 * Splits a trimmed line into two or three whitespace separated fields.
+	 * @return the fields, or null if there are too few or too many
+	 */
+	private static String[] split(String line) {
+		String[] fields = new String[3];
+		int count = 0;
+		int start = -1;
+		for (int i = 0; i <= line.length(); i++) {
+			boolean space = i == line.length() || Character.isWhitespace(line.charAt(i));
+			if (!space && start < 0) {
+				start = i;
+			} else if (space && start >= 0) {
+				if (count == fields.length) {
+					return null;
+				}
+				fields[count++] = line.substring(start, i);
+				start = -1;
+			}
+		}
+		if (count < 2) {
+			return null;
+		}
+		if (count == 2) {
+			return new String[] {fields[0], fields[1]};
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,81 @@
+
+/**
+ * LongHashSet is a set of non-negative long keys stored in a single open addressed array,
+ * so lookups neither box their keys nor follow pointers.
+ * 
+ * @author mosca1337
+ *
+ */
+public class LongHashSet {
+	private final static long EMPTY = -1;
+	
+	private long[] keys;
+	private int mask;
+	private int size;
+	
+	public LongHashSet(int expectedSize) {
+		// Keep the table at most half full
+		int capacity = 2;
+		while (capacity < expectedSize * 2) {
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		java.util.Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+	
+	public boolean add(long key) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Keys must not be negative: " + key);
+		}
+		if ((size + 1) * 2 > keys.length) {
+			resize();
+		}
+		
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		size++;
+		return true;
+	}
+	
+	public boolean contains(long key) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	private int slot(long key) {
+		// Mix the bits so that neighbouring keys spread over the table
+		long z = key * 0x9E3779B97F4A7C15L;
+		z ^= (z >>> 32);
+		return (int) z & mask;
+	}
+	
+	private void resize() {
+		long[] oldKeys = keys;
+		keys = new long[oldKeys.length * 2];
+		java.util.Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		size = 0;
+		for (long key : oldKeys) {
+			if (key != EMPTY) {
+				add(key);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * ObjectEventStore keeps every pending event as an Event object in a set.
+ * 
+ * The events are also queued by time of death, so expiring events only looks at the dead
+ * ones. The queue may still hold events that were collected or removed since they were
+ * queued, which are dropped when they reach the front.
+ * 
+ * @author mosca1337
+ *
+ */
+public class ObjectEventStore extends EventStore {
+	private Set<Event> events = new HashSet<Event>();
+	private PriorityQueue<Event> deaths = new PriorityQueue<Event>(8, new Comparator<Event>() {
+		public int compare(Event event1, Event event2) {
+			return Double.compare(getTimeOfDeath(event1), getTimeOfDeath(event2));
+		}
+	});
+	
+	private static double getTimeOfDeath(Event event) {
+		return event.getLifeSpan() == 0 ? Double.POSITIVE_INFINITY : event.timeOfDeath;
+	}
+
+	@Override
+	public void add(Event event) {
+		if (events.add(event)) {
+			deaths.add(event);
+		}
+	}
+
+	@Override
+	public void add(int priority, double timeGenerated, long lifeSpan) {
+		add(new Event(priority, timeGenerated, lifeSpan));
+	}
+
+	@Override
+	public int size() {
+		return events.size();
+	}
+
+	@Override
+	public int getPriority(double time) {
+		int totalPriority = 0;
+		for (Event event : events) {
+			totalPriority += event.getPriority(time);
+		}
+		return totalPriority;
+	}
+
+	@Override
+	public int collect(double time, EventCollector collector) {
+		int collected = events.size();
+		for (Event event : events) {
+			event.timeCollected = time;
+			collector.eventCollected(event.getPriority(time), event.timeGenerated, time);
+		}
+		
+		// Keep the set, emptying it does not allocate
+		events.clear();
+		deaths.clear();
+		return collected;
+	}
+
+	@Override
+	public int expire(double time) {
+		// The dead events are the ones that die first
+		int expired = 0;
+		while (!deaths.isEmpty() && deaths.peek().getPriority(time) <= 0) {
+			if (events.remove(deaths.poll())) {
+				expired++;
+			}
+		}
+		return expired;
+	}
+
+	@Override
+	public Set<Event> removeDeadEvents(double time) {
+		Set<Event> deadEvents = new HashSet<Event>();
+		Set<Event> liveEvents = new HashSet<Event>();
+		synchronized (events) {
+			for (Event event : events) {
+				if (event.getPriority(time) <= 0) {
+					deadEvents.add(event);
+				} else {
+					liveEvents.add(event);
+				}
+			}
+		}
+		events = liveEvents;
+		return deadEvents;
+	}
+
+	@Override
+	public Set<Event> getEvents() {
+		return events;
+	}
+
+	@Override
+	public void clear() {
+		events = new HashSet<Event>();
+		deaths.clear();
+	}
+}
@@ -0,0 +1,202 @@
+
+/**
+ * PriorityAggregate keeps the total priority of the events on an edge up to date as events
+ * are added, so the total can be read without visiting every event.
+ * 
+ * Constant events are a running sum. A decreasing event loses one priority every
+ * lifeSpan / priority, and every event of a simulation shares that period, so the next
+ * loss of each event comes up in the same order as the events were added. Those losses are
+ * kept in a first in, first out ring. Moving the total forward in time only visits events
+ * that lose priority, and each event can only lose its initial priority once, so reading the
+ * total costs constant time on average.
+ * 
+ * The total can only move forward in time. Totals for earlier times, or for events with
+ * different periods, are left to the caller by isExact() and canAnswer().
+ * 
+ * @author mosca1337
+ *
+ */
+public class PriorityAggregate {
+	
+	private int constantPriority = 0;
+	private int decreasingPriority = 0;
+	private double time = Double.NEGATIVE_INFINITY; // Time of decreasingPriority
+	private double period = 0; // Time between priority losses
+	private boolean exact = true;
+	
+	// Ring of decreasing events that still have priority, in order of their next loss
+	private double[] timesGenerated = new double[4];
+	private int[] priorities = new int[4];
+	private long[] lifeSpans = new long[4];
+	private int[] lost = new int[4];
+	private int head = 0;
+	private int count = 0;
+	
+	public void add(int priority, double timeGenerated, long lifeSpan) {
+		
+		// Constant priority
+		if (lifeSpan == 0) {
+			constantPriority += priority;
+			return;
+		}
+		
+		// The ring only holds events with one period that arrive in order
+		double eventPeriod = (double) lifeSpan / priority;
+		if (period == 0) {
+			period = eventPeriod;
+		}
+		if (eventPeriod != period || timeGenerated < time) {
+			exact = false;
+		}
+		if (!exact) {
+			return;
+		}
+		
+		advance(timeGenerated);
+		if (count == priorities.length) {
+			grow();
+		}
+		int i = index(count);
+		timesGenerated[i] = timeGenerated;
+		priorities[i] = priority;
+		lifeSpans[i] = lifeSpan;
+		lost[i] = 0;
+		count++;
+		decreasingPriority += priority;
+	}
+	
+	public void clear() {
+		constantPriority = 0;
+		decreasingPriority = 0;
+		time = Double.NEGATIVE_INFINITY;
+		period = 0;
+		exact = true;
+		head = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Whether the total at the given time can be read from the aggregate.
+	 */
+	public boolean canAnswer(double time) {
+		return exact && (count == 0 || time >= this.time);
+	}
+	
+	/**
+	 * The total priority at the given time. Only valid when canAnswer(time) is true.
+	 */
+	public int getPriority(double time) {
+		if (count == 0) {
+			return constantPriority;
+		}
+		advance(time);
+		return constantPriority + decreasingPriority;
+	}
+	
+	public boolean isExact() {
+		return exact;
+	}
+	
+	private void advance(double time) {
+		if (time <= this.time) {
+			return;
+		}
+		
+		// After a whole period every event has lost priority, and the ring must be reordered
+		boolean wrapped = time - this.time >= period;
+		int events = count;
+		for (int j = 0; j < events; j++) {
+			int i = head;
+			int eventLost = Event.getPriorityLost(priorities[i], timesGenerated[i], lifeSpans[i], time);
+			if (!wrapped && eventLost == lost[i]) {
+				break; // Later events lose priority even later
+			}
+			
+			// Move the event from the front of the ring to the back
+			head = (head + 1) % priorities.length;
+			count--;
+			decreasingPriority -= eventLost - lost[i];
+			if (eventLost < priorities[i]) {
+				int back = index(count);
+				timesGenerated[back] = timesGenerated[i];
+				priorities[back] = priorities[i];
+				lifeSpans[back] = lifeSpans[i];
+				lost[back] = eventLost;
+				count++;
+			}
+		}
+		
+		if (wrapped) {
+			reorder();
+		}
+		this.time = time;
+	}
+	
+	private double getNextLoss(int i) {
+		return timesGenerated[i] + (lost[i] + 1) * period;
+	}
+	
+	/**
+	 * Rotates the ring so that the event with the earliest next loss is at the front.
+	 */
+	private void reorder() {
+		int first = 0;
+		for (int j = 1; j < count; j++) {
+			if (getNextLoss(index(j)) < getNextLoss(index(first))) {
+				first = j;
+			}
+		}
+		
+		// Rotate in place by reversing both parts and then the whole ring
+		reverse(0, first - 1);
+		reverse(first, count - 1);
+		reverse(0, count - 1);
+	}
+	
+	private int index(int j) {
+		return (head + j) % priorities.length;
+	}
+	
+	private void reverse(int from, int to) {
+		for (; from < to; from++, to--) {
+			int i = index(from);
+			int k = index(to);
+			
+			double timeGenerated = timesGenerated[i];
+			timesGenerated[i] = timesGenerated[k];
+			timesGenerated[k] = timeGenerated;
+			int priority = priorities[i];
+			priorities[i] = priorities[k];
+			priorities[k] = priority;
+			long lifeSpan = lifeSpans[i];
+			lifeSpans[i] = lifeSpans[k];
+			lifeSpans[k] = lifeSpan;
+			int eventLost = lost[i];
+			lost[i] = lost[k];
+			lost[k] = eventLost;
+		}
+	}
+	
+	/**
+	 * Copies the ring into arrays of twice the capacity, starting at index 0.
+	 */
+	private void grow() {
+		int capacity = priorities.length * 2;
+		double[] newTimesGenerated = new double[capacity];
+		int[] newPriorities = new int[capacity];
+		long[] newLifeSpans = new long[capacity];
+		int[] newLost = new int[capacity];
+		for (int j = 0; j < count; j++) {
+			int i = index(j);
+			newTimesGenerated[j] = timesGenerated[i];
+			newPriorities[j] = priorities[i];
+			newLifeSpans[j] = lifeSpans[i];
+			newLost[j] = lost[i];
+		}
+		timesGenerated = newTimesGenerated;
+		priorities = newPriorities;
+		lifeSpans = newLifeSpans;
+		lost = newLost;
+		head = 0;
+	}
+}
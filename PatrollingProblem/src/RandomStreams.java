@@ -0,0 +1,39 @@
+/**
+ * RandomStreams splits a single root seed into independent random number generators.
+ * 
+ * Each part of a Simulation draws from its own stream, so a run can be repeated exactly
+ * from its seed and simulations running at the same time never share a generator.
+ * 
+ * @author mosca1337
+ *
+ */
+public class RandomStreams {
+	
+	// Stream identifiers
+	public final static int EDGES = 1;
+	public final static int PRIORITIES = 2;
+	public final static int ARRIVALS = 3;
+	
+	public final long seed;
+	public final Variates edges;
+	public final Variates priorities;
+	public final Variates arrivals;
+	
+	public RandomStreams(long seed) {
+		this.seed = seed;
+		edges = new Variates(split(seed, EDGES));
+		priorities = new Variates(split(seed, PRIORITIES));
+		arrivals = new Variates(split(seed, ARRIVALS));
+	}
+	
+	/**
+	 * Derives the seed of a child stream. Uses the SplitMix64 mixing function so that
+	 * neighbouring seeds and stream numbers produce unrelated child seeds.
+	 */
+	public static long split(long seed, long stream) {
+		long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,166 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * ResultCache keeps the result of every simulation ever run in a folder on disk, so that a
+ * sweep only runs the points it has not seen before.
+ *
+ * Results are addressed by the SHA-256 hash of the simulation's configuration, its seed and
+ * Simulation.engineVersion. Each result is a small text file named by its hash, in a folder
+ * named by the first two hex digits:
+ *
+ *   engine=1 period=Exponential agents=4 ... seed=1234
+ *   liveEventsCollected,deadEvents,weightCollected,delay,averageDelay,handledRate
+ *
+ * The first line is checked when the result is read, so a damaged file or a hash collision
+ * is treated as a miss. Files are written under a temporary name and renamed into place, so
+ * a result is either all there or not there at all.
+ *
+ * @author mosca1337
+ *
+ */
+public class ResultCache implements SimulationSweep.Listener {
+
+	private File folder;
+
+	public int hits = 0;
+	public int misses = 0;
+
+	public ResultCache(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Fills in the results of the points that are in the cache.
+	 * @return the number of results filled in
+	 */
+	public int fill(List<SimulationParameters> points, SimulationResult[] results) {
+		int filled = 0;
+		for (int i = 0; i < points.size(); i++) {
+			if (results[i] == null) {
+				results[i] = get(points.get(i));
+				if (results[i] != null) {
+					filled++;
+				}
+			}
+		}
+		return filled;
+	}
+
+	/**
+	 * @return the cached result of the point, or null if it has not been run
+	 */
+	public SimulationResult get(SimulationParameters parameters) {
+		String key = getKey(parameters);
+		File file = getFile(key);
+		if (!file.exists()) {
+			misses++;
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String[] fields = null;
+				if (key.equals(reader.readLine())) {
+					String line = reader.readLine();
+					fields = line == null ? null : line.split(",");
+				}
+				if (fields == null || fields.length != 6) {
+					misses++;
+					return null;
+				}
+				hits++;
+				return new SimulationResult(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+						Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]));
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			misses++;
+			return null;
+		} catch (NumberFormatException e) {
+			misses++;
+			return null;
+		}
+	}
+
+	public void put(SimulationParameters parameters, SimulationResult result) throws IOException {
+		String key = getKey(parameters);
+		File file = getFile(key);
+		file.getParentFile().mkdirs();
+
+		// Write the whole result under another name, then move it into place
+		File temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		FileOutputStream output = new FileOutputStream(temporaryFile);
+		try {
+			String text = key + "\n" + result.liveEventsCollected + "," + result.deadEvents + "," + result.weightCollected
+					+ "," + result.delay + "," + result.averageDelay + "," + result.handledRate + "\n";
+			output.write(text.getBytes("UTF-8"));
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+		if (!temporaryFile.renameTo(file)) {
+			temporaryFile.delete(); // Another sweep has just stored the same result
+		}
+	}
+
+	public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result) {
+		try {
+			put(parameters, result);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write to " + folder, e);
+		}
+	}
+
+	/**
+	 * Everything that affects the result of a point, in one line.
+	 */
+	public static String getKey(SimulationParameters parameters) {
+		return "engine=" + Simulation.engineVersion + " " + parameters.getConfiguration() + " seed=" + parameters.seed;
+	}
+
+	private File getFile(String key) {
+		String hash = toHex(sha256(key));
+		return new File(new File(folder, hash.substring(0, 2)), hash + ".txt");
+	}
+
+	/**
+	 * The first 64 bits of the SHA-256 hash of some text.
+	 */
+	public static long hash(String text) {
+		byte[] digest = sha256(text);
+		long hash = 0;
+		for (int i = 0; i < 8; i++) {
+			hash = (hash << 8) | (digest[i] & 0xFF);
+		}
+		return hash;
+	}
+
+	private static byte[] sha256(String text) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e); // Every Java platform has SHA-256
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e); // And UTF-8
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,373 @@
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ResultsTable holds the results of a sweep with one row for each simulation and one column
+ * for each parameter and statistic, ready to be loaded into analysis tools.
+ *
+ * A table is written either as a CSV file with a header row, or in a binary format that
+ * stores each column in one piece so that large sweeps are written and read back quickly:
+ *
+ *   "PPRT", version, row count, column count
+ *   for each column: name, type, values
+ *
+ * Numbers are big endian. Names are an int length and UTF-8 bytes. Values are a block of
+ * ints, longs or doubles, or for a category column a list of names followed by an int code
+ * for each row.
+ *
+ * @author mosca1337
+ *
+ */
+public class ResultsTable {
+
+	// Column types
+	public final static byte INT = 1;
+	public final static byte LONG = 2;
+	public final static byte DOUBLE = 3;
+	public final static byte CATEGORY = 4;
+
+	private final static int MAGIC = 0x50505254; // "PPRT"
+	private final static int VERSION = 1;
+
+	public final int rowCount;
+	private List<String> names = new ArrayList<String>();
+	private List<Byte> types = new ArrayList<Byte>();
+	private List<Object> columns = new ArrayList<Object>(); // int[], long[], double[] or String[]
+
+	public ResultsTable(int rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * A table with a row for each point of a sweep.
+	 */
+	public static ResultsTable fromResults(List<SimulationParameters> points, SimulationResult[] results) {
+		int rows = points.size();
+		ResultsTable table = new ResultsTable(rows);
+		int[] index = new int[rows];
+		long[] seed = new long[rows];
+		String[] period = new String[rows];
+		int[] agents = new int[rows];
+		int[] gridWidth = new int[rows];
+		int[] gridHeight = new int[rows];
+		String[] value = new String[rows];
+		int[] serviceRate = new int[rows];
+		double[] mean = new double[rows];
+		int[] trial = new int[rows];
+		int[] totalEvents = new int[rows];
+		int[] timeConstant = new int[rows];
+		int[] liveEventsCollected = new int[rows];
+		int[] deadEvents = new int[rows];
+		int[] weightCollected = new int[rows];
+		double[] delay = new double[rows];
+		double[] averageDelay = new double[rows];
+		double[] handledRate = new double[rows];
+
+		for (int row = 0; row < rows; row++) {
+			SimulationParameters point = points.get(row);
+			index[row] = point.index;
+			seed[row] = point.seed;
+			period[row] = SimulationManager.periodFunctionStrings[point.periodFunction];
+			agents[row] = point.agents;
+			gridWidth[row] = point.gridWidth;
+			gridHeight[row] = point.gridHeight;
+			value[row] = SimulationManager.valueFunctionStrings[point.valueFunction];
+			serviceRate[row] = point.serviceRateConstant;
+			mean[row] = point.mean;
+			trial[row] = point.trial;
+			totalEvents[row] = point.totalEvents;
+			timeConstant[row] = point.timeConstant;
+
+			SimulationResult result = results[row];
+			liveEventsCollected[row] = result.liveEventsCollected;
+			deadEvents[row] = result.deadEvents;
+			weightCollected[row] = result.weightCollected;
+			delay[row] = result.delay;
+			averageDelay[row] = result.averageDelay;
+			handledRate[row] = result.handledRate;
+		}
+
+		table.addColumn("index", INT, index);
+		table.addColumn("seed", LONG, seed);
+		table.addColumn("period", CATEGORY, period);
+		table.addColumn("agents", INT, agents);
+		table.addColumn("gridWidth", INT, gridWidth);
+		table.addColumn("gridHeight", INT, gridHeight);
+		table.addColumn("value", CATEGORY, value);
+		table.addColumn("serviceRate", INT, serviceRate);
+		table.addColumn("mean", DOUBLE, mean);
+		table.addColumn("trial", INT, trial);
+		table.addColumn("totalEvents", INT, totalEvents);
+		table.addColumn("timeConstant", INT, timeConstant);
+		table.addColumn("liveEventsCollected", INT, liveEventsCollected);
+		table.addColumn("deadEvents", INT, deadEvents);
+		table.addColumn("weightCollected", INT, weightCollected);
+		table.addColumn("delay", DOUBLE, delay);
+		table.addColumn("averageDelay", DOUBLE, averageDelay);
+		table.addColumn("handledRate", DOUBLE, handledRate);
+		return table;
+	}
+
+	/**
+	 * @param values an int[], long[], double[] or String[] to match the type, with a value for each row
+	 */
+	public void addColumn(String name, byte type, Object values) {
+		names.add(name);
+		types.add(type);
+		columns.add(values);
+	}
+
+	public List<String> getColumnNames() {
+		return names;
+	}
+
+	public byte getType(String name) {
+		return types.get(getColumn(name));
+	}
+
+	public int[] getInts(String name) {
+		return (int[]) columns.get(getColumn(name));
+	}
+
+	public long[] getLongs(String name) {
+		return (long[]) columns.get(getColumn(name));
+	}
+
+	public double[] getDoubles(String name) {
+		return (double[]) columns.get(getColumn(name));
+	}
+
+	public String[] getCategories(String name) {
+		return (String[]) columns.get(getColumn(name));
+	}
+
+	private int getColumn(String name) {
+		int column = names.indexOf(name);
+		if (column < 0) {
+			throw new IllegalArgumentException("No column " + name);
+		}
+		return column;
+	}
+
+	/**
+	 * Writes the table as CSV, with a header row of column names.
+	 */
+	public void writeCsv(File file) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			StringBuilder line = new StringBuilder();
+			for (int column = 0; column < names.size(); column++) {
+				if (column > 0) {
+					line.append(',');
+				}
+				line.append(names.get(column));
+			}
+			line.append('\n');
+			writer.write(line.toString());
+
+			for (int row = 0; row < rowCount; row++) {
+				line.setLength(0);
+				for (int column = 0; column < columns.size(); column++) {
+					if (column > 0) {
+						line.append(',');
+					}
+					Object values = columns.get(column);
+					switch (types.get(column)) {
+					case INT:
+						line.append(((int[]) values)[row]);
+						break;
+					case LONG:
+						line.append(((long[]) values)[row]);
+						break;
+					case DOUBLE:
+						line.append(((double[]) values)[row]);
+						break;
+					default:
+						line.append(((String[]) values)[row]);
+					}
+				}
+				line.append('\n');
+				writer.write(line.toString());
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public void writeBinary(File file) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			FileChannel channel = output.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(16);
+			header.putInt(MAGIC).putInt(VERSION).putInt(rowCount).putInt(names.size());
+			write(channel, header);
+
+			for (int column = 0; column < columns.size(); column++) {
+				writeString(channel, names.get(column));
+				byte type = types.get(column);
+				write(channel, ByteBuffer.allocate(1).put(type));
+
+				Object values = columns.get(column);
+				ByteBuffer buffer;
+				switch (type) {
+				case INT:
+					buffer = ByteBuffer.allocate(rowCount * 4);
+					buffer.asIntBuffer().put((int[]) values);
+					break;
+				case LONG:
+					buffer = ByteBuffer.allocate(rowCount * 8);
+					buffer.asLongBuffer().put((long[]) values);
+					break;
+				case DOUBLE:
+					buffer = ByteBuffer.allocate(rowCount * 8);
+					buffer.asDoubleBuffer().put((double[]) values);
+					break;
+				default:
+					// Each name once, then a code for each row
+					String[] strings = (String[]) values;
+					Map<String, Integer> codes = new HashMap<String, Integer>();
+					List<String> categories = new ArrayList<String>();
+					int[] rowCodes = new int[rowCount];
+					for (int row = 0; row < rowCount; row++) {
+						Integer code = codes.get(strings[row]);
+						if (code == null) {
+							code = categories.size();
+							codes.put(strings[row], code);
+							categories.add(strings[row]);
+						}
+						rowCodes[row] = code;
+					}
+					write(channel, ByteBuffer.allocate(4).putInt(categories.size()));
+					for (String category : categories) {
+						writeString(channel, category);
+					}
+					buffer = ByteBuffer.allocate(rowCount * 4);
+					buffer.asIntBuffer().put(rowCodes);
+				}
+				buffer.position(buffer.capacity());
+				write(channel, buffer);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	public static ResultsTable readBinary(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer header = read(channel, 16);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a results table");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " is version " + version + " of the results format rather than " + VERSION);
+			}
+			int rowCount = header.getInt();
+			int columnCount = header.getInt();
+
+			ResultsTable table = new ResultsTable(rowCount);
+			for (int column = 0; column < columnCount; column++) {
+				String name = readString(channel);
+				byte type = read(channel, 1).get();
+				switch (type) {
+				case INT:
+					int[] ints = new int[rowCount];
+					read(channel, rowCount * 4).asIntBuffer().get(ints);
+					table.addColumn(name, type, ints);
+					break;
+				case LONG:
+					long[] longs = new long[rowCount];
+					read(channel, rowCount * 8).asLongBuffer().get(longs);
+					table.addColumn(name, type, longs);
+					break;
+				case DOUBLE:
+					double[] doubles = new double[rowCount];
+					read(channel, rowCount * 8).asDoubleBuffer().get(doubles);
+					table.addColumn(name, type, doubles);
+					break;
+				case CATEGORY:
+					String[] categories = new String[read(channel, 4).getInt()];
+					for (int i = 0; i < categories.length; i++) {
+						categories[i] = readString(channel);
+					}
+					int[] codes = new int[rowCount];
+					read(channel, rowCount * 4).asIntBuffer().get(codes);
+					String[] strings = new String[rowCount];
+					for (int row = 0; row < rowCount; row++) {
+						strings[row] = categories[codes[row]];
+					}
+					table.addColumn(name, type, strings);
+					break;
+				default:
+					throw new IOException(file + ": unknown type " + type + " of column " + name);
+				}
+			}
+			return table;
+		} finally {
+			input.close();
+		}
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof ResultsTable)) {
+			return false;
+		}
+		ResultsTable table = (ResultsTable) object;
+		return rowCount == table.rowCount && names.equals(table.names) && types.equals(table.types)
+				&& Arrays.deepEquals(columns.toArray(), table.columns.toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return rowCount * 31 + names.hashCode();
+	}
+
+	private static void writeString(FileChannel channel, String string) throws IOException {
+		byte[] bytes = string.getBytes("UTF-8");
+		ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+		buffer.putInt(bytes.length).put(bytes);
+		write(channel, buffer);
+	}
+
+	private static String readString(FileChannel channel) throws IOException {
+		int length = read(channel, 4).getInt();
+		return new String(read(channel, length).array(), "UTF-8");
+	}
+
+	/**
+	 * Writes a buffer that has just been filled.
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -1,6 +1,8 @@
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
@@ -11,30 +13,75 @@ public class Simulation {
 	// Simulation constants
 	public final static int minPriority = 1;
 	public final static int maxPriority = 10;
+	
+	// Change whenever a change to the simulation changes its results, so cached results are not reused
+	public final static int engineVersion = 1;
 	// Used to show the simulation is real time
 	// The range of agent traversal time is equal to the range of (minPriority*timeConstant) to (maxPriority*timeConstant)
-	public static int timeConstant = 1000; // The default time of a 'tick' is one second
+	// Each simulation owns its time constant so that simulations can run concurrently
+	public int timeConstant = 1000; // The default time of a 'tick' is one second
 	
 	// Time
 	public double startTime = 0;
 	private double lastExecutionTime = 0;
-	private PriorityQueue<EventTask> eventQueue;
+	private EventScheduler scheduler;
 	
 	// Visualization
 	public boolean isVisible;
 	public SimulationFrame graphFrame;
 	public EventGraph graph;
+	public int gridWidth = 5;
+	public int gridHeight = 5;
+	public GraphTopology topology; // Simulate on this network instead of a grid
+	public boolean balancedPartition = false; // Split grids by event load rather than into rectangles
+	
+	// Relative arrival rate of each edge by edge id, null when events arrive uniformly
+	public double[] arrivalWeights;
+	private AliasTable arrivalTable;
+	
+	// Move border edges between agents as their workloads change
+	public boolean rebalancing = false;
+	public int rebalancePeriod = 50; // In 'ticks'
+	public BoundaryRebalancer rebalancer;
+	
+	// Agents with nothing to do in their boundary wait until an event arrives there, then
+	// catch up on the idle steps they missed
+	public boolean idleParking = false;
+	private List<List<AgentMoveTask>> watchers; // Tasks of parked agents watching each edge, by edge id
+	private List<AgentMoveTask> roamingWatchers; // Tasks of parked agents that may move anywhere
+	private List<AgentMoveTask> moveTasks;
 
 	// Agents
 	public Set<Agent> agents;
 	public int totalAgents;
 	public Fraction serviceRate;
 	
+	// Regions (fromX, fromY, toX, toY) and starting vertices of 2, 3 and 4 agents on a 5x5
+	// grid: halves, three strips and quadrants, starting from the corners and centre
+	private final static int[][][] legacyRegions = {
+		{{0, 0, 2, 4}, {2, 0, 4, 4}},
+		{{0, 0, 1, 4}, {1, 0, 3, 4}, {3, 0, 4, 4}},
+		{{0, 0, 2, 2}, {0, 2, 2, 4}, {2, 0, 4, 2}, {2, 2, 4, 4}}};
+	private final static int[][][] legacyStarts = {
+		{{0, 0}, {4, 4}},
+		{{0, 0}, {2, 2}, {4, 4}},
+		{{0, 0}, {0, 4}, {4, 0}, {4, 4}}};
+	
+	// Random numbers
+	public RandomStreams random;
+	
 	// Simulation statistics
 	public int eventsGenerated = 0;
 	private int deadEventCount = 0;
 	public int totalEvents;
 	
+	// Keep events in primitive arrays rather than as Event objects
+	public boolean arrayEventStorage = false;
+	
+	// Remove events from the graph the moment they die
+	public boolean continuousExpiry = true;
+	private ExpiryWheel expiryWheel;
+	
 	// Timers and functions
 	public Function eventValueFunction;
 	public Function eventPeriod;
@@ -44,19 +91,21 @@ public class Simulation {
 	private Function constantEventPeriod = new Function() {
 		public long function(long x) {
 			 // Two events are generated every 'tick'
-    		return (long) (Simulation.timeConstant * constantPeriodFraction.evaluate());
+    		return (long) (timeConstant * constantPeriodFraction.evaluate());
     	}
 	};
 
 	public static void main(String[] args) {
 
+		final Simulation simulation = new Simulation();
+
 		// Event generation period (Exponential)
-		final Exponential exponential = new Exponential(5.0); // Default as 1
+		final Exponential exponential = new Exponential(5.0, simulation.random.arrivals); // Default as 1
 		Function exponentialEventPeriod = new Function() {
 			public long function(long x) {
 
 				double exponent = exponential.nextExponential();
-				long period = (long) (Simulation.timeConstant * exponent);
+				long period = (long) (simulation.timeConstant * exponent);
 				period = (long) Math.ceil(period); // Round up to prevent time of 0
 				
 				// Display time in 'ticks'
@@ -84,11 +133,11 @@ public class Simulation {
 	    	}
 		};
 
-		Simulation simulation = new Simulation();
 		simulation.isVisible = true;
 //		simulation.eventValueFunction = constantValue;
 		simulation.eventValueFunction = decreasingValue;
 //		simulation.eventPeriod = exponentialEventPeriod;
+//		simulation.eventPeriod = ArrivalProfile.diurnal(2.0, 0.8, 12, 24, 48).eventPeriod(simulation.timeConstant, simulation.random.arrivals);
 		simulation.totalAgents = 4;
 		
 		simulation.totalEvents = 100000;
@@ -107,37 +156,79 @@ public class Simulation {
 		totalEvents = 500; // Default to 500 for display purposes.
 		eventPeriod = constantEventPeriod; // Default to a constant period
 		eventValueFunction = null; // Default: event value does not change
+		setSeed(new Random().nextLong()); // Default to a random seed
+	}
+	
+	/**
+	 * Seeds all random numbers of this simulation. Simulations with the same seed and
+	 * parameters produce the same results.
+	 */
+	public void setSeed(long seed) {
+		random = new RandomStreams(seed);
 	}
 	
 	public void simulate() {
 		
-		graph = new EventGraph(5,5);
+		if (topology != null) {
+			graph = new EventGraph(topology);
+		} else {
+			graph = new EventGraph(gridWidth, gridHeight);
+		}
+		graph.setArrayStorage(arrayEventStorage);
+		
+		// Events arrive on edges in proportion to their weights
+		arrivalTable = null;
+		if (arrivalWeights != null) {
+			if (arrivalWeights.length != graph.getEdgeCount()) {
+				throw new IllegalArgumentException(arrivalWeights.length + " arrival weights for " + graph.getEdgeCount() + " edges");
+			}
+			arrivalTable = new AliasTable(arrivalWeights);
+		}
 		setupAgents(totalAgents);
 		
-		// Event Queue
-		eventQueue = new PriorityQueue<EventTask>(totalEvents, new Comparator<EventTask>() {
-			public int compare(EventTask eventTask1, EventTask eventTask2) {
-				   return Double.compare(eventTask1.executionTime, eventTask2.executionTime);
-				}
-	    });
+		// Dead events are removed as time passes, one 'tick' per slot
+		expiryWheel = null;
+		if (continuousExpiry) {
+			expiryWheel = new ExpiryWheel(timeConstant, 64);
+		}
+		
+		// Event Queue, holding the next event and a movement for each agent
+		scheduler = new EventScheduler(totalAgents + 1);
 
-		if (isVisible) {
+		if (isVisible && graph.vertexArray != null) { // Only grids can be drawn
 			graphFrame = new SimulationFrame(this);
 		}
 		
-		// Generate all events
-		double eventTime = 0;
-		RandomEventTask lastEventTask = null;
-		for (int i = 0; i < totalEvents; i++) {
-			eventTime += eventPeriod.function(i);
-			lastEventTask = new RandomEventTask(eventTime, graph);
-			eventQueue.add(lastEventTask);
+		// Generate the first event, every event then schedules the next one
+		eventsGenerated = 0;
+		if (totalEvents > 0) {
+			double eventTime = eventPeriod.function(0);
+			RandomEventTask eventTask = new RandomEventTask(eventTime, graph);
+			scheduler.schedule(eventTask.index, eventTime);
 		}
 
 		// Set agents in motion
+		watchers = null;
+		if (idleParking) {
+			watchers = new ArrayList<List<AgentMoveTask>>(graph.getEdgeCount());
+			for (int id = 0; id < graph.getEdgeCount(); id++) {
+				watchers.add(new ArrayList<AgentMoveTask>(2));
+			}
+			roamingWatchers = new ArrayList<AgentMoveTask>();
+		}
+		moveTasks = new ArrayList<AgentMoveTask>(agents.size());
 		for (Agent agent : agents) {
-			AgentMoveTask agentMove = new AgentMoveTask(0.0, agent, eventQueue);
-			eventQueue.add(agentMove);
+			AgentMoveTask agentMove = new AgentMoveTask(0.0, agent);
+			moveTasks.add(agentMove);
+			scheduler.schedule(agentMove.index, 0.0);
+		}
+		
+		// Rebalance the agents' boundaries every so often
+		rebalancer = null;
+		if (rebalancing && totalAgents > 1) {
+			rebalancer = new BoundaryRebalancer(graph, agents);
+			RebalanceTask rebalanceTask = new RebalanceTask((double) rebalancePeriod * timeConstant);
+			scheduler.schedule(rebalanceTask.index, rebalanceTask.executionTime);
 		}
 		
 		startTime = System.currentTimeMillis();
@@ -145,7 +236,7 @@ public class Simulation {
 		// Simulate all events
 		lastExecutionTime = 0;
 		EventTask task = null;
-		while (task != lastEventTask) {
+		while (eventsGenerated < totalEvents) {
 			
 			// Current time
 			long now = 0; // Imaginary time
@@ -155,15 +246,18 @@ public class Simulation {
 			
 			// Has the event just passed?
 			if (!isVisible || now > (lastExecutionTime + startTime)) {
-				task = eventQueue.remove();
-				lastExecutionTime = task.executionTime;
+				task = scheduler.getTask(scheduler.poll());
+				lastExecutionTime = scheduler.getTime();
+				task.executionTime = lastExecutionTime;
+				if (expiryWheel != null) {
+					deadEventCount += expiryWheel.advance(lastExecutionTime);
+				}
 				task.run();				
 			}
 		}
 		
 		// End of simulation
     	removeDeadEvents(lastExecutionTime);
-    	accumulateAgents();
 	}
 	
 	public void closeFrame() {
@@ -174,71 +268,64 @@ public class Simulation {
 	
 	private void setupAgents(int totalAgents) {
 		
-		agents = new HashSet<Agent>();
-
-		// TODO: currently only handles 1 or 2 agents
-		if (totalAgents == 1) {
-			// Create an agent in the top left of the graph
-			Vertex topLeftVertex = graph.vertexArray[0][0];
-			Agent agent = new Agent("A", this, topLeftVertex, null);
-			agents.add(agent);
-		} else if (totalAgents == 2) {
-			Set<EventEdge> topHalf = graph.getEdges(0,0,2,4);
-			Set<EventEdge> bottomHalf = graph.getEdges(2,0,4,4);
+		agents = new LinkedHashSet<Agent>();
+		
+		// Without agents events only arrive and die
+		if (totalAgents < 1) {
+			return;
+		}
+		
+		if (totalAgents > 1 && (graph.vertexArray == null || balancedPartition)) {
+			// Grow a connected region of similar load for each agent
+			GraphPartitioner partitioner = new GraphPartitioner(graph, arrivalWeights);
+			List<BitSet> regions = partitioner.partition(totalAgents);
 			
-			// Create an agent in the top left of the graph
+			for (int i = 0; i < totalAgents; i++) {
+				BitSet boundary = regions.get(i);
+				if (boundary.isEmpty()) {
+					throw new IllegalArgumentException(totalAgents + " agents do not fit on a graph of " + graph.edges.size() + " edges");
+				}
+				
+				// Each agent starts where its region was grown from
+				Agent agent = new Agent(getAgentName(i), this, partitioner.seeds[i], boundary);
+				agents.add(agent);
+			}
+		} else if (graph.vertexArray == null) {
+			// A single agent may move anywhere
+			Vertex firstVertex = graph.edges.iterator().next().vertex1;
+			Agent agent = new Agent(getAgentName(0), this, firstVertex, null);
+			agents.add(agent);
+		} else if (totalAgents == 1) {
+			// Create an agent in the top left of the graph, which may move anywhere
 			Vertex topLeftVertex = graph.vertexArray[0][0];
-			Agent agentA = new Agent("A", this, topLeftVertex, topHalf);
-			agents.add(agentA);
-
-			// Create an agent in the bottom right of the graph
-			Vertex bottomRightVertex = graph.vertexArray[4][4];
-			Agent agentB = new Agent("B", this, bottomRightVertex, bottomHalf);
-			agents.add(agentB);
-		} else if (totalAgents == 3) {
-			Set<EventEdge> topHalf = graph.getEdges(0,0,1,4);
-			Set<EventEdge> middleHalf = graph.getEdges(1,0,3,4);
-			Set<EventEdge> bottomHalf = graph.getEdges(3,0,4,4);
+			Agent agent = new Agent(getAgentName(0), this, topLeftVertex, null);
+			agents.add(agent);
+		} else if (graph.width == 5 && graph.height == 5 && totalAgents >= 2 && totalAgents <= 4) {
+			// The original layouts of the 5x5 grid, so that its results stay comparable
+			int[][] regions = legacyRegions[totalAgents - 2];
+			int[][] starts = legacyStarts[totalAgents - 2];
+			for (int i = 0; i < totalAgents; i++) {
+				BitSet boundary = graph.getEdgeIds(regions[i][0], regions[i][1], regions[i][2], regions[i][3]);
+				Vertex startVertex = graph.vertexArray[starts[i][0]][starts[i][1]];
+				Agent agent = new Agent(getAgentName(i), this, startVertex, boundary);
+				agents.add(agent);
+			}
+		} else {
+			// Split the grid into a balanced region for each agent
+			List<int[]> regions = new ArrayList<int[]>(totalAgents);
+			splitGrid(0, 0, graph.width - 1, graph.height - 1, totalAgents, regions);
 			
-			// Create an agent in the top left of the graph
-			Vertex topLeftVertex = graph.vertexArray[0][0];
-			Agent agentA = new Agent("A", this, topLeftVertex, topHalf);
-			agents.add(agentA);
-
-			// Create an agent in the bottom right of the graph
-			Vertex middleVertex = graph.vertexArray[2][2];
-			Agent agentB = new Agent("B", this, middleVertex, middleHalf);
-			agents.add(agentB);
-
-			// Create an agent in the bottom right of the graph
-			Vertex bottomRightVertex = graph.vertexArray[4][4];
-			Agent agentC = new Agent("C", this, bottomRightVertex, bottomHalf);
-			agents.add(agentC);
-		} else if (totalAgents == 4) {
-			Set<EventEdge> topLeft = graph.getEdges(0,0,2,2);
-			Set<EventEdge> topRight = graph.getEdges(0,2,2,4);
-			Set<EventEdge> bottomLeft = graph.getEdges(2,0,4,2);
-			Set<EventEdge> bottomRight = graph.getEdges(2,2,4,4);
-
-			// Create an agent in the top left of the graph
-			Vertex topLeftVertex = graph.vertexArray[0][0];
-			Agent agentA = new Agent("A", this, topLeftVertex, topLeft);
-			agents.add(agentA);
-
-			// Create an agent in the bottom right of the graph
-			Vertex topRightVertex = graph.vertexArray[0][4];
-			Agent agentB = new Agent("B", this, topRightVertex, topRight);
-			agents.add(agentB);
-
-			// Create an agent in the bottom right of the graph
-			Vertex bottomLeftVertex = graph.vertexArray[4][0];
-			Agent agentC = new Agent("C", this, bottomLeftVertex, bottomLeft);
-			agents.add(agentC);
-
-			// Create an agent in the bottom right of the graph
-			Vertex bottomRightVertex = graph.vertexArray[4][4];
-			Agent agentD = new Agent("D", this, bottomRightVertex, bottomRight);
-			agents.add(agentD);
+			for (int[] region : regions) {
+				BitSet boundary = graph.getEdgeIds(region[0], region[1], region[2], region[3]);
+				if (boundary.isEmpty()) {
+					throw new IllegalArgumentException(totalAgents + " agents do not fit on a " + graph.width + "x" + graph.height + " grid");
+				}
+				
+				// Each agent starts in the centre of its region
+				Vertex centreVertex = graph.vertexArray[(region[0] + region[2]) / 2][(region[1] + region[3]) / 2];
+				Agent agent = new Agent(getAgentName(agents.size()), this, centreVertex, boundary);
+				agents.add(agent);
+			}
 		}
 		
 		// Apply the service rate to all agents
@@ -249,6 +336,54 @@ public class Simulation {
 		}
 	}
 	
+	/**
+	 * Recursively splits the rectangle of vertices from (fromX, fromY) to (toX, toY) into
+	 * one region per agent. The longer side is cut in proportion to the number of agents
+	 * on either side of the cut, so regions hold a similar number of edges. Neighbouring
+	 * regions share the edges along their cut, as the 5x5 layouts do.
+	 */
+	private static void splitGrid(int fromX, int fromY, int toX, int toY, int agents, List<int[]> regions) {
+		if (agents == 1) {
+			regions.add(new int[] {fromX, fromY, toX, toY});
+			return;
+		}
+		
+		int firstAgents = agents / 2;
+		if (toX - fromX >= toY - fromY) {
+			int split = splitPoint(fromX, toX, firstAgents, agents);
+			splitGrid(fromX, fromY, split, toY, firstAgents, regions);
+			splitGrid(split, fromY, toX, toY, agents - firstAgents, regions);
+		} else {
+			int split = splitPoint(fromY, toY, firstAgents, agents);
+			splitGrid(fromX, fromY, toX, split, firstAgents, regions);
+			splitGrid(fromX, split, toX, toY, agents - firstAgents, regions);
+		}
+	}
+	
+	private static int splitPoint(int from, int to, int firstAgents, int agents) {
+		int split = from + Math.round((float) (to - from) * firstAgents / agents);
+		
+		// Leave some width on both sides when there is room
+		if (to - from >= 2) {
+			split = Math.max(from + 1, Math.min(to - 1, split));
+		}
+		return split;
+	}
+	
+	/**
+	 * Agents are named A to Z, then AA, AB and so on.
+	 */
+	private static String getAgentName(int index) {
+		String name = "";
+		index++;
+		while (index > 0) {
+			index--;
+			name = (char) ('A' + index % 26) + name;
+			index /= 26;
+		}
+		return name;
+	}
+	
 	public double getHandledRate() {
 		int liveEventsCollected = 0;
 		for (Agent agent : agents) {
@@ -300,63 +435,165 @@ public class Simulation {
 //	}
 	
 	public int getDeadEventCount() {
-		removeDeadEvents(lastExecutionTime);
-		accumulateAgents();
-		return deadEventCount;
-	}
-	
-	private void accumulateAgents() {
+		
+		// With continuous expiry the count is always up to date
+		if (expiryWheel == null) {
+			removeDeadEvents(lastExecutionTime);
+		}
+		
+		// Dead events removed from edges and dead events collected by agents
+		int count = deadEventCount;
 		for (Agent agent : agents) {
-			deadEventCount += agent.deadEventsCollected;
-			agent.deadEventsCollected = 0;
+			count += agent.deadEventsCollected;
 		}
+		return count;
 	}
 	
 	private void removeDeadEvents(double time) {
+		
+		// Only events that died since the last task need to be removed
+		if (expiryWheel != null) {
+			deadEventCount += expiryWheel.advance(time);
+			return;
+		}
+		
 		for (EventEdge edge : graph.edges) {
-			Set<Event> deadEvents = edge.removeDeadEvents(time);
-			deadEventCount += deadEvents.size();
+			deadEventCount += edge.expireDeadEvents(time);
 		}
 	}
 	
+	/**
+	 * Wakes the parked agents in a list of watchers whose boundary holds the edge, then
+	 * empties the list. Tasks listed by an earlier park are dropped, and list themselves
+	 * again when they next park.
+	 */
+	private void wakeWatchers(List<AgentMoveTask> edgeWatchers, EventEdge edge, double time) {
+		for (int i = 0; i < edgeWatchers.size(); i++) {
+			AgentMoveTask watcher = edgeWatchers.get(i);
+			if (watcher.agent.parked && watcher.agent.isWithinBoundary(edge)) {
+				watcher.wake(time);
+			}
+		}
+		edgeWatchers.clear();
+	}
+	
     class RandomEventTask extends EventTask {
     	private EventGraph graph;
+    	private int index;
     	
-    	public RandomEventTask(Double executionTime, EventGraph graph) {
+    	public RandomEventTask(double executionTime, EventGraph graph) {
     		super(executionTime);
     		this.graph = graph;
+    		this.index = scheduler.register(this);
     	}
 
 		@Override
         public void run() {
     		// Select random edge
-            Random rand = new Random();
-            int randomInt = rand.nextInt(this.graph.edges.size());
-            EventEdge edge = (EventEdge) this.graph.edges.toArray()[randomInt];
+            int randomInt;
+            if (arrivalTable != null) {
+            	randomInt = arrivalTable.sample(random.edges);
+            } else {
+            	randomInt = random.edges.nextInt(graph.getEdgeCount());
+            }
+            EventEdge edge = graph.getEdge(randomInt);
+            
+            // Wake the agents waiting for work here before the event is added, so the steps
+            // they catch up on do not see it
+            if (watchers != null) {
+            	wakeWatchers(watchers.get(edge.id), edge, executionTime);
+            	wakeWatchers(roamingWatchers, edge, executionTime);
+            }
 
             // Create random priority
-            int randomPriority = minPriority + (int)(Math.random() * ((maxPriority - minPriority) + 1));
-            Event event = new Event(randomPriority, executionTime, eventValueFunction);
-            edge.addEvent(event);
+            int randomPriority = random.priorities.nextInclusive(minPriority, maxPriority);
+            long lifeSpan = Event.getLifeSpan(randomPriority, eventValueFunction, timeConstant);
+            edge.addEvent(randomPriority, executionTime, lifeSpan);
+            
+            // Remove the event when it dies
+            if (expiryWheel != null && lifeSpan != 0) {
+            	expiryWheel.schedule(edge, executionTime + lifeSpan);
+            }
             eventsGenerated++;
+            
+            // Schedule the next event
+            if (eventsGenerated < totalEvents) {
+            	scheduler.schedule(index, executionTime + eventPeriod.function(eventsGenerated));
+            }
        }
     }
 	
     class AgentMoveTask extends EventTask {
     	private Agent agent;
-    	private PriorityQueue<EventTask> queue;
+    	private int index;
     	
-    	public AgentMoveTask(Double executionTime, Agent agent, PriorityQueue<EventTask> queue) {
+    	public AgentMoveTask(double executionTime, Agent agent) {
     		super(executionTime);
     		this.agent = agent;
-    		this.queue = queue;
+    		this.index = scheduler.register(this);
     	}
 
 		@Override
         public void run() {
+    		// Each agent's task is rescheduled for its next move
     		double movementTime = agent.move(executionTime);
-    		AgentMoveTask nextMovementTask = new AgentMoveTask(movementTime, agent, queue);
-    		queue.add(nextMovementTask);
+    		if (agent.parked) {
+    			park();
+    		} else {
+    			scheduler.schedule(index, movementTime);
+    		}
+        }
+		
+		/**
+		 * Leaves the task unscheduled and lists it as a watcher of every edge in the
+		 * agent's boundary, so an idle agent costs nothing until an event arrives there.
+		 */
+		private void park() {
+			if (agent.boundary == null) {
+				watch(roamingWatchers);
+			} else {
+				BitSet boundary = agent.boundary;
+				for (int id = boundary.nextSetBit(0); id >= 0; id = boundary.nextSetBit(id + 1)) {
+					watch(watchers.get(id));
+				}
+			}
+		}
+		
+		private void watch(List<AgentMoveTask> edgeWatchers) {
+			// The task may still be listed from an earlier park
+			if (!edgeWatchers.contains(this)) {
+				edgeWatchers.add(this);
+			}
+		}
+		
+		/**
+		 * Moves the agent on to where it would be by now had it kept wandering, and
+		 * schedules its next move from there.
+		 */
+		public void wake(double time) {
+			scheduler.schedule(index, agent.unpark(time));
+		}
+    }
+	
+    class RebalanceTask extends EventTask {
+    	private int index;
+    	
+    	public RebalanceTask(double executionTime) {
+    		super(executionTime);
+    		this.index = scheduler.register(this);
+    	}
+
+		@Override
+        public void run() {
+			// The rebalancer needs to know where every agent is, and parked agents may be
+			// given edges with events on them
+			for (AgentMoveTask moveTask : moveTasks) {
+				if (moveTask.agent.parked) {
+					moveTask.wake(executionTime);
+				}
+			}
+			rebalancer.rebalance(executionTime);
+			scheduler.schedule(index, executionTime + (double) rebalancePeriod * timeConstant);
         }
     }
 }
@@ -4,7 +4,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.NumberTickUnit;
@@ -39,51 +42,69 @@ import au.com.bytecode.opencsv.CSVWriter;
  * When an edge has no value, an agent is said to 'idle' across the edge. Idle time is equal
  * to the traversal time of an edge with a value of 1.
  * 
- * The number of agents vary from 1 to 4.
+ * The number of agents vary from 1 to 4. Agents patrol a 5x5 grid, which is split into a region for each agent.
  * 
  * A simulation will end after 100,000 events have been generated.
  * 
  * For each combination of simulation parameters, 10 samples are taken and averaged.
  * 
+ * Simulations are independent of each other, so they are spread over a pool of worker threads.
+ * The number of threads may be given as the first argument and defaults to the number of processors,
+ * which is also what 0 asks for.
+ * 
+ * Every simulation is seeded from a root seed, which may be given as the second argument, so a whole
+ * sweep can be repeated exactly.
+ * 
  * @author mosca1337
  *
  */
 public class SimulationManager {
 	public final static int trials = 10;
 	public final static int totalAgents = 4;
+	public final static int gridWidth = 5;
+	public final static int gridHeight = 5;
 	public final static int[] serviceRateConstants = {2,4,8};
+	public final static int totalEvents = 100000; // 100,000
 	
+	// Accelerate the time of a 'tick'
+	public final static int timeConstant = 100;
+	
+	// Default root seed for all simulations in the sweep
+	public final static long defaultSeed = 1337;
 	
 	// TODO: even
 	// TODO: even from 1.0 to 5.5 events per 'tick'
 	// Event generation period (Even)
-	private static float constantEventPeriodMean = 2; // Default as 2
-	public static Function evenEventPeriod = new Function() {
-		public long function(long x) {
-    		return (long) Math.round(Simulation.timeConstant / constantEventPeriodMean); // Two events are generated every tick
-    	}
-	};
+	public static Function evenEventPeriod(final float constantEventPeriodMean, final int timeConstant) {
+		return new Function() {
+			public long function(long x) {
+	    		return (long) Math.round(timeConstant / constantEventPeriodMean); // Two events are generated every tick
+	    	}
+		};
+	}
 
 	// Event generation period (Exponential)
-	private static Exponential exponential = new Exponential(1); // Default as 1
-	public static Function exponentialEventPeriod = new Function() {
-		public long function(long x) {
-
-			double exponent = exponential.nextExponential();
-			long period = (long) (Simulation.timeConstant * exponent);
-			period = (long) Math.ceil(period); // Round up to prevent time of 0
-			
-			// Display time in 'ticks'
-			if (Simulation.verbose) {
-				System.out.print("Next event generated in ");
-				System.out.printf("%.3f", exponent);
-				System.out.print(" ticks (");
-				System.out.println(period+" seconds)");
-			}
-			
-			return period;
-    	}
-	};
+	public static Function exponentialEventPeriod(double mean, final int timeConstant, Random random) {
+		final Exponential exponential = new Exponential(mean, random);
+		return new Function() {
+			public long function(long x) {
+	
+				double exponent = exponential.nextExponential();
+				long period = (long) (timeConstant * exponent);
+				period = (long) Math.ceil(period); // Round up to prevent time of 0
+				
+				// Display time in 'ticks'
+				if (Simulation.verbose) {
+					System.out.print("Next event generated in ");
+					System.out.printf("%.3f", exponent);
+					System.out.print(" ticks (");
+					System.out.println(period+" seconds)");
+				}
+				
+				return period;
+	    	}
+		};
+	}
 
 	// Decreasing event value
 	public static Function decreasingValue = new Function() {
@@ -102,52 +123,240 @@ public class SimulationManager {
 	public static Function[] valueFunctions = {constantValue, decreasingValue}; 
 	public static String[] valueFunctionStrings = {"Constant", "Decreasing"};
 	
-	public static Function[] periodFunctions = {evenEventPeriod, exponentialEventPeriod};
+	public final static int EVEN = 0;
+	public final static int EXPONENTIAL = 1;
+	public static String[] periodFunctionStrings = {"Even", "Exponential"};
+	
+	/**
+	 * Lists every simulation of the sweep in the order that results are reported.
+	 * Each simulation's seed is split from the root seed by a hash of its configuration,
+	 * so a point keeps its seed, and its cached result, when other points are added or removed.
+	 */
+	public static List<SimulationParameters> getSweepPoints(long seed) {
+		List<SimulationParameters> points = new ArrayList<SimulationParameters>();
+		for (int periodFunction = 0; periodFunction < periodFunctionStrings.length; periodFunction++) {
+			for (int agents = 1; agents <= totalAgents; agents++) {
+				for (int k = 0; k < valueFunctions.length; k++) {
+					for (int serviceRateConstant : serviceRateConstants) {
+						for (float mean = 1.0f; mean < 6.0; mean += 0.5) {
+							for (int i = 0; i < trials; i ++) {
+								SimulationParameters point = new SimulationParameters(points.size(), periodFunction, agents, gridWidth, gridHeight, k, serviceRateConstant, mean, i, totalEvents, timeConstant, seed);
+								points.add(point.withSeed(RandomStreams.split(seed, ResultCache.hash(point.getConfiguration()))));
+							}
+						}
+					}
+				}
+			}
+		}
+		return points;
+	}
 
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		
+		// Worker threads
+		int threads = SimulationSweep.threadsArgument(args);
+		
+		// Root seed
+		long seed = defaultSeed;
+		if (args.length > 1) {
+			seed = Long.parseLong(args[1]);
+		}
 				
+		// Carry on from the simulations already recorded
+		List<SimulationParameters> points = getSweepPoints(seed);
+		File simulationsFolder = getDefaultFolder();
+		simulationsFolder.mkdirs();
+		final SweepJournal journal = new SweepJournal(new File(simulationsFolder, "simulationJournal.csv"), seed, points);
+		SimulationResult[] results = journal.open();
+		int journaled = points.size() - countRemaining(results);
+		
+		// Only run the points that have never been run
+		final ResultCache cache = new ResultCache(new File(simulationsFolder, "cache"));
+		int cached = cache.fill(points, results);
+		
 		// Progress bar
-		int numberOfSimulations = periodFunctions.length * totalAgents * valueFunctions.length * serviceRateConstants.length * 10 * trials;
-		System.out.println("There will be " + numberOfSimulations + " simulations.");
-		ProgressFrame progressFrame = new ProgressFrame(numberOfSimulations);
+		int numberOfSimulations = countRemaining(results);
+		System.out.println("There will be " + numberOfSimulations + " simulations on " + threads + " threads, " + journaled + " already done and " + cached + " cached.");
+		final ProgressFrame progressFrame = new ProgressFrame(numberOfSimulations);
+		
+		// Run all simulations
+		SimulationSweep sweep = new SimulationSweep(threads);
+		try {
+			sweep.run(points, results, new SimulationSweep.Listener() {
+				public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result) {
+					journal.simulationFinished(finished, total, parameters, result);
+					cache.simulationFinished(finished, total, parameters, result);
+					
+					// Update the progress bar
+					progressFrame.updateValue(finished);
+				}
+			});
+		} finally {
+			journal.close();
+		}
+		double[][] rows = averageTrials(points, results);
 		
 		// Writing data to CSV
-		String userHomeFolder = System.getProperty("user.home");
-		File simulationsFolder = new File(userHomeFolder, "Desktop/Simulations");
-		simulationsFolder.mkdirs();
-		File simulationCSV = new File(simulationsFolder, "simulationData.csv");
-		FileWriter fileWriter = new FileWriter(simulationCSV);
-		CSVWriter writer = new CSVWriter(new BufferedWriter(fileWriter), ',', CSVWriter.NO_QUOTE_CHARACTER);
+		writeData(new File(simulationsFolder, "simulationData.csv"), rows);
+		writeResults(simulationsFolder, points, results);
+		for (int row = 0; row < rows.length; row++) {
+			System.out.println("Simulation " + (row + 1) * trials + " ended.");
+			System.out.println(Arrays.toString(rows[row]));
+		}
 
 		// Writing PNG graphs
 		File graphFolder = new File(simulationsFolder, "graphs");
 		graphFolder.mkdirs();
-
-		// Accelerate the time of a 'tick'
-		Simulation.timeConstant = 100;
+		writeCharts(graphFolder, rows);
+		
+		progressFrame.setVisible(false);
+		progressFrame.dispose();
+	}
+	
+	/**
+	 * The number of points of a sweep without a result.
+	 */
+	public static int countRemaining(SimulationResult[] results) {
+		int remaining = 0;
+		for (SimulationResult result : results) {
+			if (result == null) {
+				remaining++;
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * The folder that results are written to unless another is given.
+	 */
+	public static File getDefaultFolder() {
+		String userHomeFolder = System.getProperty("user.home");
+		return new File(userHomeFolder, "Desktop/Simulations");
+	}
+	
+	// Columns of a row of averaged results
+	public final static int MEAN = 0;
+	public final static int EVENTS_COLLECTED = 1;
+	public final static int DEAD_EVENTS = 2;
+	public final static int WEIGHT_COLLECTED = 3;
+	public final static int DELAY = 4;
+	public final static int AVERAGE_DELAY = 5;
+	public final static int HANDLED_RATE = 6;
+	public final static String[] dataColumns = {"Mean", "Events Collected", "Dead Events", "Weight Collected", "Delay", "AverageDelay", "Handled Rate"};
+	
+	/**
+	 * Averages the trials of every point of the sweep.
+	 * @return a row of results for each mean, in the order of the sweep
+	 */
+	public static double[][] averageTrials(List<SimulationParameters> points, SimulationResult[] results) {
+		double[][] rows = new double[results.length / trials][];
+		for (int row = 0; row < rows.length; row++) {
+			
+			// Average results
+			int avgLiveEventsCollected = 0;
+			double avgDeadEvents = 0;
+			double avgWeightCollected = 0;
+			double avgDelay = 0;
+			double avgAverageDelay = 0;
+			double avgHandledRate = 0;
+		
+			for (int i = 0; i < trials; i ++) {
+				SimulationResult result = results[row * trials + i];
+				
+				// Gather statistics
+				avgLiveEventsCollected += result.liveEventsCollected;
+				avgDeadEvents += result.deadEvents;
+				avgWeightCollected += result.weightCollected;
+				avgDelay += result.delay;
+				avgAverageDelay += result.averageDelay;
+				avgHandledRate += result.handledRate;
+			}
+			
+			// Average statistics for all trials
+			avgLiveEventsCollected /= trials;
+			avgDeadEvents /= trials;
+			avgWeightCollected /= trials;
+			avgDelay /= trials;
+			avgAverageDelay /= trials;
+			avgHandledRate /= trials;
+			
+			rows[row] = new double[]{points.get(row * trials).mean, avgLiveEventsCollected, avgDeadEvents, avgWeightCollected, avgDelay, avgAverageDelay, avgHandledRate};
+		}
+		return rows;
+	}
+	
+	/**
+	 * Writes averaged results as a CSV file, with a table for each set of parameters.
+	 */
+	public static void writeData(File file, double[][] rows) throws IOException {
+		CSVWriter writer = new CSVWriter(new BufferedWriter(new FileWriter(file)), ',', CSVWriter.NO_QUOTE_CHARACTER);
 		
 		// Formatting output
 		DecimalFormat df = new DecimalFormat("#.###"); // 3 decimal places
 
-		int simulationCount = 0;
-		for (Function periodFunction : periodFunctions) {
+		int row = 0;
+		for (int periodFunction = 0; periodFunction < periodFunctionStrings.length; periodFunction++) {
 			
-			String periodFunctionString = "";
-			if (periodFunction == evenEventPeriod) {
-				periodFunctionString = "Even";
-			} else if (periodFunction == exponentialEventPeriod) {
-				periodFunctionString = "Exponential";
-			}
+			String periodFunctionString = periodFunctionStrings[periodFunction];
 			
 			for (int agents = 1; agents <= totalAgents; agents++) {
 				
 				for (int k = 0; k < valueFunctions.length; k++) {
-					Function valueFunction = valueFunctions[k];
 					
 					// Write CSV table header
 					String[] line = new String[]{};
 					writer.writeNext(line);
-					writer.flushQuietly();
+
+					for (int serviceRateConstant : serviceRateConstants) {
+						
+						line = new String[]{"Event Generation:", periodFunctionString, "Agents:", String.valueOf(agents), "Event Value:", valueFunctionStrings[k], "Service Rate:", "f/" + String.valueOf(serviceRateConstant)};
+						writer.writeNext(line);
+						writer.writeNext(dataColumns);
+
+						for (float mean = 1.0f; mean < 6.0; mean += 0.5) {
+							double[] data = rows[row++];
+							
+							// Record a CSV line
+							line = new String[data.length];
+							for (int column = 0; column < data.length; column++) {
+								line[column] = df.format(data[column]);
+							}
+							writer.writeNext(line);
+						}
+						
+						// Blank line
+						line = new String[]{""};
+						writer.writeNext(line);
+					}
+				}
+			}
+		}
+		
+		writer.close();
+	}
+	
+	/**
+	 * Writes the result of every simulation, as simulationResults.csv for reading and as
+	 * simulationResults.bin for loading quickly.
+	 */
+	public static void writeResults(File folder, List<SimulationParameters> points, SimulationResult[] results) throws IOException {
+		ResultsTable table = ResultsTable.fromResults(points, results);
+		table.writeCsv(new File(folder, "simulationResults.csv"));
+		table.writeBinary(new File(folder, "simulationResults.bin"));
+	}
+	
+	/**
+	 * Draws a chart of each statistic against the mean for each set of parameters.
+	 */
+	public static void writeCharts(File graphFolder, double[][] rows) throws IOException {
+		int row = 0;
+		for (int periodFunction = 0; periodFunction < periodFunctionStrings.length; periodFunction++) {
+			
+			String periodFunctionString = periodFunctionStrings[periodFunction];
+			
+			for (int agents = 1; agents <= totalAgents; agents++) {
+				
+				for (int k = 0; k < valueFunctions.length; k++) {
 					
 					// Visual graph data set
 					XYSeriesCollection eventsCollectedCollection = new XYSeriesCollection();
@@ -158,16 +367,6 @@ public class SimulationManager {
 
 					for (int serviceRateConstant : serviceRateConstants) {
 						
-						line = new String[]{"Event Generation:", periodFunctionString, "Agents:", String.valueOf(agents), "Event Value:", valueFunctionStrings[k], "Service Rate:", "f/" + String.valueOf(serviceRateConstant)};
-						writer.writeNext(line);
-						writer.flushQuietly();
-						line = new String[]{"Mean", "Events Collected", "Dead Events", "Weight Collected", "Delay", "AverageDelay", "Handled Rate"};
-						writer.writeNext(line);
-						writer.flushQuietly();
-						
-						// The service rate (Ex. 1/10 or 1/20)
-						Fraction serviceRate = new Fraction(1, serviceRateConstant);
-						
 						String serviceRateString = "f/"+serviceRateConstant;
 						
 						// Data series for graphing
@@ -178,72 +377,14 @@ public class SimulationManager {
 						XYSeries handledRateSeries = new XYSeries(serviceRateString);
 
 						for (float mean = 1.0f; mean < 6.0; mean += 0.5) {
-							
-							// Set the exponential mean
-							exponential.setMean(mean);
-							
-							// Set the constant mean
-							constantEventPeriodMean = mean;
-
-							// Average results
-							int avgLiveEventsCollected = 0;
-							double avgDeadEvents = 0;
-							double avgWeightCollected = 0;
-							double avgDelay = 0;
-							double avgAverageDelay = 0;
-							double avgHandledRate = 0;
-						
-							for (int i = 0; i < trials; i ++) {
-								// Create a simulation
-								Simulation simulation = new Simulation();
-								simulation.totalAgents = agents;
-								simulation.serviceRate = serviceRate;
-								simulation.totalEvents = 100000; // 100,000
-//								simulation.totalEvents = 100;
-//								simulation.totalEvents = 1000;
-								simulation.eventValueFunction = valueFunction;
-								simulation.eventPeriod = periodFunction;
-								simulation.isVisible = false;
-								simulation.simulate();
-								
-								// Gather statistics
-								avgLiveEventsCollected += simulation.getLiveEventsCollected();
-								avgDeadEvents += simulation.getDeadEventCount();
-								avgWeightCollected += simulation.getTotalPriorityCollected();
-								avgDelay += simulation.getDelay();
-								avgAverageDelay += simulation.getAverageDelay();
-								avgHandledRate += simulation.getHandledRate();
-								
-								// Close the visualization
-								simulation.closeFrame();
-								
-								// Update the progress bar
-								simulationCount ++;
-								progressFrame.updateValue(simulationCount);
-							}
-							
-							// Average statistics for all trials
-							avgLiveEventsCollected /= trials;
-							avgDeadEvents /= trials;
-							avgWeightCollected /= trials;
-							avgDelay /= trials;
-							avgAverageDelay /= trials;
-							avgHandledRate /= trials;
+							double[] data = rows[row++];
 						
 							// Add data to series
-							eventsCollectedSeries.add(mean, avgLiveEventsCollected);
-							deadEventsSeries.add(mean, avgDeadEvents);
-							valueCollectedSeries.add(mean, avgWeightCollected);
-							averageDelaySeries.add(mean, avgDelay);
-							handledRateSeries.add(mean, avgHandledRate);
-
-							// Record a CSV line
-							line = new String[]{df.format(mean), df.format(avgLiveEventsCollected), df.format(avgDeadEvents), df.format(avgWeightCollected), df.format(avgDelay), df.format(avgAverageDelay), df.format(avgHandledRate)};
-							writer.writeNext(line);
-							writer.flushQuietly();
-							
-							System.out.println("Simulation " + simulationCount + " ended.");
-							System.out.println(Arrays.toString(line));
+							eventsCollectedSeries.add(mean, data[EVENTS_COLLECTED]);
+							deadEventsSeries.add(mean, data[DEAD_EVENTS]);
+							valueCollectedSeries.add(mean, data[WEIGHT_COLLECTED]);
+							averageDelaySeries.add(mean, data[DELAY]);
+							handledRateSeries.add(mean, data[HANDLED_RATE]);
 						}
 						
 						eventsCollectedCollection.addSeries(eventsCollectedSeries);
@@ -251,11 +392,6 @@ public class SimulationManager {
 						valueCollectedCollection.addSeries(valueCollectedSeries);
 						averageDelayCollection.addSeries(averageDelaySeries);
 						handledRateCollection.addSeries(handledRateSeries);
-						
-						// Blank line
-						line = new String[]{""};
-						writer.writeNext(line);
-						writer.flushQuietly();
 					}
 
 					LineChart eventsCollectedChart = new LineChart("Mean", "Events Collected", eventsCollectedCollection);
@@ -288,9 +424,5 @@ public class SimulationManager {
 				}
 			}
 		}
-		
-		writer.close();
-		progressFrame.setVisible(false);
-		progressFrame.dispose();
 	}
 }
@@ -0,0 +1,89 @@
+
+/**
+ * SimulationParameters describes a single point of a parameter sweep. Every point
+ * builds its own Simulation along with its own event generation functions, so no
+ * state is shared between simulations that run at the same time.
+ * 
+ * @author mosca1337
+ *
+ */
+public class SimulationParameters {
+	
+	// Position of this point in the sweep
+	public final int index;
+	
+	// Simulation parameters
+	public final int periodFunction; // Index into SimulationManager.periodFunctionStrings
+	public final int agents;
+	public final int gridWidth;
+	public final int gridHeight;
+	public final int valueFunction; // Index into SimulationManager.valueFunctions
+	public final int serviceRateConstant;
+	public final float mean;
+	public final int trial;
+	public final int totalEvents;
+	public final int timeConstant;
+	public final long seed;
+
+	public SimulationParameters(int index, int periodFunction, int agents, int gridWidth, int gridHeight, int valueFunction, int serviceRateConstant, float mean, int trial, int totalEvents, int timeConstant, long seed) {
+		this.index = index;
+		this.periodFunction = periodFunction;
+		this.agents = agents;
+		this.gridWidth = gridWidth;
+		this.gridHeight = gridHeight;
+		this.valueFunction = valueFunction;
+		this.serviceRateConstant = serviceRateConstant;
+		this.mean = mean;
+		this.trial = trial;
+		this.totalEvents = totalEvents;
+		this.timeConstant = timeConstant;
+		this.seed = seed;
+	}
+	
+	/**
+	 * The same point with another seed.
+	 */
+	public SimulationParameters withSeed(long newSeed) {
+		return new SimulationParameters(index, periodFunction, agents, gridWidth, gridHeight, valueFunction, serviceRateConstant, mean, trial, totalEvents, timeConstant, newSeed);
+	}
+	
+	/**
+	 * Describes everything about this point that affects its results, apart from the seed
+	 * and its position in the sweep.
+	 */
+	public String getConfiguration() {
+		return "period=" + SimulationManager.periodFunctionStrings[periodFunction] + " agents=" + agents + " grid=" + gridWidth + "x" + gridHeight
+				+ " value=" + SimulationManager.valueFunctionStrings[valueFunction] + " serviceRate=f/" + serviceRateConstant
+				+ " mean=" + mean + " trial=" + trial + " events=" + totalEvents + " timeConstant=" + timeConstant;
+	}
+	
+	public Simulation createSimulation() {
+		Simulation simulation = new Simulation();
+		simulation.setSeed(seed);
+		simulation.timeConstant = timeConstant;
+		simulation.totalAgents = agents;
+		simulation.gridWidth = gridWidth;
+		simulation.gridHeight = gridHeight;
+		simulation.serviceRate = new Fraction(1, serviceRateConstant);
+		simulation.totalEvents = totalEvents;
+		simulation.eventValueFunction = SimulationManager.valueFunctions[valueFunction];
+		simulation.isVisible = false;
+		simulation.arrayEventStorage = true;
+		
+		// Event generation functions hold state, so every simulation gets its own
+		if (periodFunction == SimulationManager.EVEN) {
+			simulation.eventPeriod = SimulationManager.evenEventPeriod(mean, timeConstant);
+		} else {
+			simulation.eventPeriod = SimulationManager.exponentialEventPeriod(mean, timeConstant, simulation.random.arrivals);
+		}
+		
+		return simulation;
+	}
+	
+	@Override
+	public String toString() {
+		return SimulationManager.periodFunctionStrings[periodFunction] + ", " + agents + " agents, " + gridWidth + "x" + gridHeight + ", "
+				+ SimulationManager.valueFunctionStrings[valueFunction] + ", f/" + serviceRateConstant
+				+ ", mean " + mean + ", trial " + trial + ", seed " + seed;
+	}
+}
@@ -0,0 +1,33 @@
+
+/**
+ * SimulationResult holds the statistics gathered from a finished Simulation.
+ * 
+ * @author mosca1337
+ *
+ */
+public class SimulationResult {
+	public int liveEventsCollected;
+	public int deadEvents;
+	public int weightCollected;
+	public double delay;
+	public double averageDelay;
+	public double handledRate;
+	
+	public SimulationResult(Simulation simulation) {
+		liveEventsCollected = simulation.getLiveEventsCollected();
+		deadEvents = simulation.getDeadEventCount();
+		weightCollected = simulation.getTotalPriorityCollected();
+		delay = simulation.getDelay();
+		averageDelay = simulation.getAverageDelay();
+		handledRate = simulation.getHandledRate();
+	}
+	
+	public SimulationResult(int liveEventsCollected, int deadEvents, int weightCollected, double delay, double averageDelay, double handledRate) {
+		this.liveEventsCollected = liveEventsCollected;
+		this.deadEvents = deadEvents;
+		this.weightCollected = weightCollected;
+		this.delay = delay;
+		this.averageDelay = averageDelay;
+		this.handledRate = handledRate;
+	}
+}
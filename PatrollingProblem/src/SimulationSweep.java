@@ -0,0 +1,111 @@
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SimulationSweep runs a list of independent simulations over a pool of worker threads.
+ * 
+ * Results are returned in the same order as the parameters that were given, no matter
+ * which order the simulations finish in. Listeners are always notified from the thread
+ * that called run(). Points that already have a result, such as those read back from a
+ * SweepJournal, are not run again.
+ * 
+ * @author mosca1337
+ *
+ */
+public class SimulationSweep {
+	
+	public interface Listener {
+		public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result);
+	}
+	
+	private int threads;
+	
+	public SimulationSweep(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+	
+	/**
+	 * The number of worker threads given as the first argument of a sweep's main method.
+	 * Defaults to the number of processors, which is also what 0 or less asks for.
+	 */
+	public static int threadsArgument(String[] args) {
+		int threads = 0;
+		if (args.length > 0) {
+			threads = Integer.parseInt(args[0]);
+		}
+		if (threads < 1) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		return threads;
+	}
+	
+	public SimulationResult[] run(List<SimulationParameters> points, Listener listener) throws InterruptedException {
+		return run(points, new SimulationResult[points.size()], listener);
+	}
+	
+	/**
+	 * Runs the points that do not have a result yet.
+	 * @param results the results found so far, filled in as simulations finish
+	 */
+	public SimulationResult[] run(List<SimulationParameters> points, SimulationResult[] results, Listener listener) throws InterruptedException {
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(executor);
+		
+		try {
+			// Submit every simulation still to run
+			int submitted = 0;
+			for (int i = 0; i < points.size(); i++) {
+				if (results[i] == null) {
+					completionService.submit(new SimulationCall(i, points.get(i), results));
+					submitted++;
+				}
+			}
+			
+			// Wait for the simulations in the order that they finish
+			for (int finished = 1; finished <= submitted; finished++) {
+				Future<Integer> future = completionService.take();
+				int i;
+				try {
+					i = future.get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Simulation failed", e.getCause());
+				}
+				
+				if (listener != null) {
+					listener.simulationFinished(finished, submitted, points.get(i), results[i]);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		return results;
+	}
+	
+	private static class SimulationCall implements Callable<Integer> {
+		private int index;
+		private SimulationParameters parameters;
+		private SimulationResult[] results;
+		
+		public SimulationCall(int index, SimulationParameters parameters, SimulationResult[] results) {
+			this.index = index;
+			this.parameters = parameters;
+			this.results = results;
+		}
+
+		public Integer call() {
+			Simulation simulation = parameters.createSimulation();
+			simulation.simulate();
+			results[index] = new SimulationResult(simulation);
+			simulation.closeFrame();
+			return index;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * SweepJournal keeps the result of every finished simulation of a sweep on disk, so that a
+ * sweep that is stopped part way can carry on where it left off.
+ *
+ * The journal is a text file that is only ever appended to. Its first line names the sweep
+ * and the Simulation.engineVersion that ran it, and each following line holds the results
+ * of one simulation:
+ *
+ *   # sweep engine=1 seed=1337 points=4800
+ *   index,seed,liveEventsCollected,deadEvents,weightCollected,delay,averageDelay,handledRate
+ *
+ * Each line is forced to the disk before the next simulation is recorded. A line that was
+ * cut short by a crash is dropped when the journal is opened again. Delete the journal to
+ * run a sweep again from the start.
+ *
+ * @author mosca1337
+ *
+ */
+public class SweepJournal implements SimulationSweep.Listener {
+
+	private File file;
+	private List<SimulationParameters> points;
+	private String header;
+	private FileOutputStream output;
+
+	public SweepJournal(File file, long seed, List<SimulationParameters> points) {
+		this.file = file;
+		this.points = points;
+		header = "# sweep engine=" + Simulation.engineVersion + " seed=" + seed + " points=" + points.size();
+	}
+
+	/**
+	 * Reads the results recorded so far and opens the journal for more.
+	 * @return the result of each point of the sweep, or null for points still to run
+	 */
+	public SimulationResult[] open() throws IOException {
+		SimulationResult[] results = new SimulationResult[points.size()];
+		long length = 0; // Of the complete lines
+
+		if (file.exists()) {
+			byte[] bytes = readFully(file);
+			int start = 0;
+			int lineNumber = 0;
+			for (int end = 0; end < bytes.length; end++) {
+				if (bytes[end] != '\n') {
+					continue;
+				}
+				String line = new String(bytes, start, end - start, "UTF-8");
+				lineNumber++;
+				if (lineNumber == 1) {
+					if (!line.equals(header)) {
+						throw new IOException(file + " is the journal of another sweep ('" + line + "' rather than '" + header + "'). Move it away to start this sweep.");
+					}
+				} else {
+					readResult(line, lineNumber, results);
+				}
+				start = end + 1;
+			}
+			length = start;
+		}
+
+		// Drop the end of a line cut short, and start a new journal with its header
+		RandomAccessFile journal = new RandomAccessFile(file, "rw");
+		try {
+			journal.setLength(length);
+		} finally {
+			journal.close();
+		}
+		output = new FileOutputStream(file, true);
+		if (length == 0) {
+			write(header);
+		}
+		return results;
+	}
+
+	private void readResult(String line, int lineNumber, SimulationResult[] results) throws IOException {
+		String[] fields = line.split(",");
+		if (fields.length != 8) {
+			throw new IOException(file + " line " + lineNumber + ": expected 8 fields but found '" + line + "'");
+		}
+		try {
+			int index = Integer.parseInt(fields[0]);
+			long seed = Long.parseLong(fields[1]);
+			if (index < 0 || index >= results.length || points.get(index).seed != seed) {
+				throw new IOException(file + " line " + lineNumber + ": no point " + index + " with seed " + seed + " in this sweep");
+			}
+			results[index] = new SimulationResult(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+					Double.parseDouble(fields[5]), Double.parseDouble(fields[6]), Double.parseDouble(fields[7]));
+		} catch (NumberFormatException e) {
+			throw new IOException(file + " line " + lineNumber + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Records a finished simulation.
+	 */
+	public void append(SimulationParameters parameters, SimulationResult result) throws IOException {
+		write(parameters.index + "," + parameters.seed + "," + result.liveEventsCollected + "," + result.deadEvents + "," + result.weightCollected
+				+ "," + result.delay + "," + result.averageDelay + "," + result.handledRate);
+	}
+
+	public void simulationFinished(int finished, int total, SimulationParameters parameters, SimulationResult result) {
+		try {
+			append(parameters, result);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write to " + file, e);
+		}
+	}
+
+	/**
+	 * Writes a whole line at once and waits for it to reach the disk.
+	 */
+	private void write(String line) throws IOException {
+		output.write((line + "\n").getBytes("UTF-8"));
+		output.getFD().sync();
+	}
+
+	public void close() throws IOException {
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+	}
+
+	private static byte[] readFully(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) > 0) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,176 @@
+import java.util.Random;
+
+/**
+ * Variates is a fast random number generator for a single simulation, with the variates
+ * the simulation draws on every event.
+ *
+ * It is a drop in Random built on SplitMix64. Each stream belongs to one simulation, so
+ * the state is a plain long rather than Random's atomic one, and a double takes one
+ * step of the generator rather than two.
+ *
+ * Exponentials use the ziggurat method of Marsaglia and Tsang: 256 layers of equal
+ * area under the density, so nearly every exponential is one draw, one table lookup and
+ * one multiplication. Integers below a bound use Lemire's multiply and shift instead of
+ * a division.
+ *
+ * @author mosca1337
+ *
+ */
+public class Variates extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private long state;
+
+	public Variates() {
+		this(new Random().nextLong());
+	}
+
+	public Variates(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		state = seed; // Called by Random's constructor
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * A uniform integer from 0 up to but not including the bound.
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+
+		// The top 32 bits of a 64 bit product, rejecting the few values that would favour some results
+		long product = (nextLong() >>> 32) * bound;
+		if ((product & 0xFFFFFFFFL) < bound) {
+			long threshold = 0x100000000L % bound;
+			while ((product & 0xFFFFFFFFL) < threshold) {
+				product = (nextLong() >>> 32) * bound;
+			}
+		}
+		return (int) (product >>> 32);
+	}
+
+	/**
+	 * A uniform integer from min to max, both included, such as an event priority.
+	 */
+	public int nextInclusive(int min, int max) {
+		return min + nextInt(max - min + 1);
+	}
+
+	/**
+	 * An exponential variate with a mean of 1.
+	 */
+	public double nextExponential() {
+		long bits = nextLong();
+		int layer = (int) bits & 0xFF;
+		long u = bits >>> 11; // 53 bits, independent of the layer
+		if (u < ZIGGURAT_LIMITS[layer]) {
+			return u * ZIGGURAT_WIDTHS[layer]; // Within the rectangle under the density
+		}
+		return nextExponentialSlowly(layer, u);
+	}
+
+	private double nextExponentialSlowly(int layer, long u) {
+		while (true) {
+			if (layer == 0) {
+				// The tail is itself exponential
+				return ZIGGURAT_R - Math.log(1 - nextDouble());
+			}
+			double x = u * ZIGGURAT_WIDTHS[layer];
+			if (ZIGGURAT_HEIGHTS[layer] + nextDouble() * (ZIGGURAT_HEIGHTS[layer - 1] - ZIGGURAT_HEIGHTS[layer]) < Math.exp(-x)) {
+				return x;
+			}
+
+			long bits = nextLong();
+			layer = (int) bits & 0xFF;
+			u = bits >>> 11;
+			if (u < ZIGGURAT_LIMITS[layer]) {
+				return u * ZIGGURAT_WIDTHS[layer];
+			}
+		}
+	}
+
+	/**
+	 * Fills an array with exponential variates of the given mean.
+	 */
+	public void fillExponential(double[] values, double mean) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = mean * nextExponential();
+		}
+	}
+
+	/**
+	 * Fills an array with uniform variates from 0 up to but not including 1.
+	 */
+	public void fillUniform(double[] values) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = nextDouble();
+		}
+	}
+
+	/**
+	 * Fills an array with uniform integers from min to max, both included.
+	 */
+	public void fillInclusive(int[] values, int min, int max) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = nextInclusive(min, max);
+		}
+	}
+
+	// Ziggurat tables, layer 0 is the base and the tail
+	private static final int ZIGGURAT_LAYERS = 256;
+	private static final double ZIGGURAT_R = 7.69711747013104972; // Where the tail starts
+	private static final double ZIGGURAT_AREA = 3.9496598225815571993e-3; // Of each layer
+	private static final long[] ZIGGURAT_LIMITS = new long[ZIGGURAT_LAYERS];
+	private static final double[] ZIGGURAT_WIDTHS = new double[ZIGGURAT_LAYERS];
+	private static final double[] ZIGGURAT_HEIGHTS = new double[ZIGGURAT_LAYERS];
+
+	static {
+		double scale = 0x1.0p53;
+		double x = ZIGGURAT_R;
+		double base = ZIGGURAT_AREA / Math.exp(-x); // Width of the base, with the tail
+
+		ZIGGURAT_LIMITS[0] = (long) (x / base * scale);
+		ZIGGURAT_LIMITS[1] = 0;
+		ZIGGURAT_WIDTHS[0] = base / scale;
+		ZIGGURAT_WIDTHS[ZIGGURAT_LAYERS - 1] = x / scale;
+		ZIGGURAT_HEIGHTS[0] = 1;
+		ZIGGURAT_HEIGHTS[ZIGGURAT_LAYERS - 1] = Math.exp(-x);
+
+		for (int layer = ZIGGURAT_LAYERS - 2; layer >= 1; layer--) {
+			double previous = x;
+			x = -Math.log(ZIGGURAT_AREA / x + Math.exp(-x));
+			ZIGGURAT_LIMITS[layer + 1] = (long) (x / previous * scale);
+			ZIGGURAT_HEIGHTS[layer] = Math.exp(-x);
+			ZIGGURAT_WIDTHS[layer] = x / scale;
+		}
+	}
+}
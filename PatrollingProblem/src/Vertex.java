@@ -1,6 +1,7 @@
 
 public class Vertex {
 	public String name;
+	public int id; // Dense index of this vertex within its graph
 	public int x;
 	public int y;
 	